@@ -10,12 +10,29 @@ public interface IMethod {
 	
 	public String getSignature();
 	
+	/**
+	 * Returns the id of the signature of the method in the shared
+	 * <code>SignatureTable</code>. Implementations should memoise it
+	 * @return The id of the signature of the method
+	 */
+	public default int getSignatureId() {
+		return SignatureTable.getShared().intern(this.getSignature());
+	}
+	
+	
 	/**
 	 * Returns the full signature of the method, i.e., the signature with the package
 	 * and the class that implements the method.
 	 * @return The full signature of the method
 	 */
 	public String getFullSignature();
+	/**
+	 * Checks whether comparedMethod has the same signature as this method. The
+	 * relation builders rely on similar methods having equal signatures, to look
+	 * them up by signature
+	 * @param comparedMethod
+	 * @return
+	 */
 	public boolean isSimilar(IMethod comparedMethod);
 	public String getElementName();
 	public String[] getParameterNames();
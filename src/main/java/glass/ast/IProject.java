@@ -19,4 +19,14 @@ public interface IProject {
 	 * @return First type found
 	 */
 	public IType findType(String typeName);
+
+	/**
+	 * Returns whether the types of this project (their hierarchy, methods and
+	 * fields) can be queried from several threads at once. The relation builders
+	 * only query the types in parallel if this is true, and sequentially otherwise.
+	 * @return
+	 */
+	public default boolean isThreadSafe() {
+		return false;
+	}
 }
@@ -0,0 +1,83 @@
+package glass.ast;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A symbol table of method signatures: each distinct signature is interned once,
+ * and gets a dense int id, so that the relation builders compare and look up
+ * methods by id instead of rebuilding and hashing their signature strings.
+ *
+ * Equal signatures always get the same id, so two methods are similar (see
+ * <code>IMethod.isSimilar(...)</code>) iff their signature ids are equal. The
+ * ids are those of the shared table, unless stated otherwise. The table can be
+ * used by several threads.
+ *
+ * The shared table lives as long as the JVM, and is never cleared: the method
+ * wrappers memoise their ids, which would not be valid anymore. It keeps one string
+ * per distinct signature seen by any project analysed in the JVM, which is small
+ * next to the models themselves. The ids depend on the order in which the
+ * signatures are first seen, so they are only meaningful within one run, and must
+ * not be saved (<code>RelationIO</code> saves the signatures instead).
+ */
+public final class SignatureTable {
+
+	private static final SignatureTable SHARED = new SignatureTable();
+
+	private ConcurrentHashMap<String, Integer> ids = new ConcurrentHashMap<String, Integer>();
+
+	private List<String> signatures = new ArrayList<String>();
+
+	/**
+	 * the table used by <code>IMethod.getSignatureId()</code>, for the whole life of
+	 * the JVM
+	 * @return
+	 */
+	public static SignatureTable getShared() {
+		return SHARED;
+	}
+
+	/**
+	 * returns the id of signature, interning it if needed
+	 * @param signature
+	 * @return
+	 */
+	public int intern(String signature) {
+		Integer id = ids.get(signature);
+		if (id == null) {
+			synchronized (this) {
+				id = ids.get(signature);
+				if (id == null) {
+					id = signatures.size();
+					signatures.add(signature);
+					ids.put(signature, id);
+				}
+			}
+		}
+		return id;
+	}
+
+	/**
+	 * returns the id of signature, or -1 if it was never interned
+	 * @param signature
+	 * @return
+	 */
+	public int idOf(String signature) {
+		Integer id = ids.get(signature);
+		return id == null ? -1 : id;
+	}
+
+	/**
+	 * returns the signature whose id is id
+	 * @param id
+	 * @return
+	 */
+	public synchronized String signatureOf(int id) {
+		return signatures.get(id);
+	}
+
+	public int size() {
+		return ids.size();
+	}
+}
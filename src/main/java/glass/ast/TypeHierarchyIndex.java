@@ -0,0 +1,341 @@
+package glass.ast;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * A one-time index of the type hierarchy of the defined types of a project, so that
+ * the relation builders and the visitors do not query the (possibly expensive)
+ * <code>getAllSupertypes()</code> and <code>getAllSubtypes()</code> of the same
+ * types over and over.
+ *
+ * The types get dense ids: the defined types first, in the order of the collection
+ * they come from, then the other types that show up in their hierarchies (types of
+ * libraries, anonymous classes, etc.). For each defined type, the index stores its
+ * ancestors and its descendants, as bit vectors of ids, as well as the closure of its
+ * implementing classes (the classes that <code>getImplementingClasses()</code> gives
+ * for an interface, and all their subtypes). The
+ * hierarchy of each defined type is queried once, when the index is built: the index
+ * does not see the changes made to the hierarchy afterwards.
+ *
+ * The bit vectors returned by the index are shared, and must not be modified.
+ */
+public class TypeHierarchyIndex {
+
+	private HashMap<IType, Integer> ids = new HashMap<IType, Integer>();
+
+	private List<IType> types = new ArrayList<IType>();
+
+	private int definedTypeCount;
+
+	private BitSet[] ancestors;
+
+	private BitSet[] descendants;
+
+	private BitSet[] implementingClasses;
+
+	private BitSet interfaces = new BitSet();
+
+	private int[] topologicalOrder;
+
+	private volatile BitSet[] directSubtypes;
+
+	private BitSet[] directSupertypes;
+
+	public TypeHierarchyIndex(IProject project) {
+		this(project.getDefinedTypes());
+	}
+
+	public TypeHierarchyIndex(Collection<IType> definedTypes) {
+		// 1. the defined types come first
+		for (IType type : definedTypes) {
+			intern(type);
+		}
+		definedTypeCount = types.size();
+
+		// 2. query the hierarchy of each defined type once. This interns the types
+		// outside of the project as they show up
+		ancestors = new BitSet[definedTypeCount];
+		descendants = new BitSet[definedTypeCount];
+		for (int id = 0; id < definedTypeCount; id++) {
+			ancestors[id] = encode(types.get(id).getAllSupertypes());
+			descendants[id] = encode(types.get(id).getAllSubtypes());
+		}
+
+		// 3. the implementing classes of an interface, as the interface gives them,
+		// and all their subtypes
+		implementingClasses = new BitSet[definedTypeCount];
+		for (int id = 0; id < definedTypeCount; id++) {
+			implementingClasses[id] = new BitSet();
+			if (!types.get(id).isInterface())
+				continue;
+			for (IType implementingClass : nonNull(types.get(id).getImplementingClasses())) {
+				if (implementingClass == null)
+					continue;
+				int classId = intern(implementingClass);
+				implementingClasses[id].set(classId);
+				implementingClasses[id]
+						.or(isDefined(classId) ? descendants[classId] : encode(implementingClass.getAllSubtypes()));
+			}
+		}
+		for (int id = 0; id < types.size(); id++) {
+			if (types.get(id).isInterface())
+				interfaces.set(id);
+		}
+
+		// 4. a topological order of the defined types, ancestors first. An ancestor
+		// of a type has strictly fewer defined ancestors than the type itself, so
+		// sorting by the number of defined ancestors will do
+		int[] definedAncestorCounts = new int[definedTypeCount];
+		List<Integer> order = new ArrayList<Integer>();
+		for (int id = 0; id < definedTypeCount; id++) {
+			definedAncestorCounts[id] = ancestors[id].get(0, definedTypeCount).cardinality();
+			order.add(id);
+		}
+		order.sort((left, right) -> definedAncestorCounts[left] != definedAncestorCounts[right]
+				? Integer.compare(definedAncestorCounts[left], definedAncestorCounts[right])
+				: Integer.compare(left, right));
+		topologicalOrder = new int[definedTypeCount];
+		for (int i = 0; i < definedTypeCount; i++) {
+			topologicalOrder[i] = order.get(i);
+		}
+	}
+
+	/**
+	 * the number of types in the index, defined or not
+	 * @return
+	 */
+	public int size() {
+		return types.size();
+	}
+
+	/**
+	 * the number of defined types, whose ids are 0 ... definedTypeCount() - 1
+	 * @return
+	 */
+	public int definedTypeCount() {
+		return definedTypeCount;
+	}
+
+	/**
+	 * returns the id of type, or -1 if it is not in the index
+	 * @param type
+	 * @return
+	 */
+	public int idOf(IType type) {
+		Integer id = ids.get(type);
+		return id == null ? -1 : id;
+	}
+
+	public IType get(int id) {
+		return types.get(id);
+	}
+
+	public boolean isDefined(int id) {
+		return id >= 0 && id < definedTypeCount;
+	}
+
+	public boolean isInterface(int id) {
+		return interfaces.get(id);
+	}
+
+	/**
+	 * the ids of the ancestors of a defined type
+	 * @param id
+	 * @return
+	 */
+	public BitSet ancestors(int id) {
+		return ancestors[id];
+	}
+
+	/**
+	 * the ids of the descendants of a defined type
+	 * @param id
+	 * @return
+	 */
+	public BitSet descendants(int id) {
+		return descendants[id];
+	}
+
+	/**
+	 * the ids of the implementing classes of a defined interface, as
+	 * <code>getImplementingClasses()</code> gives them, and of their subtypes. Empty
+	 * for a class
+	 * @param id
+	 * @return
+	 */
+	public BitSet implementingClasses(int id) {
+		return implementingClasses[id];
+	}
+
+	/**
+	 * the ids of the defined types right below a defined type, i.e. its defined
+	 * descendants that are not below another of its defined descendants. Every
+	 * defined descendant of the type can be reached through them
+	 * @param id
+	 * @return
+	 */
+	public BitSet directSubtypes(int id) {
+		if (directSubtypes == null)
+			computeReduction();
+		return directSubtypes[id];
+	}
+
+	/**
+	 * the ids of the defined types right above a defined type, i.e. its defined
+	 * ancestors that are not above another of its defined ancestors. Every defined
+	 * ancestor of the type can be reached through them
+	 * @param id
+	 * @return
+	 */
+	public BitSet directSupertypes(int id) {
+		if (directSubtypes == null)
+			computeReduction();
+		return directSupertypes[id];
+	}
+
+	/**
+	 * the ids of the defined types, ordered so that the ancestors of a type come
+	 * before it
+	 * @return
+	 */
+	public int[] topologicalOrder() {
+		return topologicalOrder.clone();
+	}
+
+	/**
+	 * checks whether ancestor is a (strict) ancestor of type
+	 * @param type
+	 * @param ancestor
+	 * @return
+	 */
+	public boolean isSubtypeOf(IType type, IType ancestor) {
+		int id = idOf(type);
+		if (!isDefined(id))
+			return contains(type.getAllSupertypes(), ancestor);
+		int ancestorId = idOf(ancestor);
+		return ancestorId >= 0 && ancestors[id].get(ancestorId);
+	}
+
+	/**
+	 * same as <code>type.getAllSupertypes()</code>, from the index if type is a
+	 * defined type
+	 * @param type
+	 * @return
+	 */
+	public IType[] getAllSupertypes(IType type) {
+		int id = idOf(type);
+		if (!isDefined(id))
+			return nonNull(type.getAllSupertypes());
+		return decode(ancestors[id]);
+	}
+
+	/**
+	 * same as <code>type.getAllSubtypes()</code>, from the index if type is a
+	 * defined type
+	 * @param type
+	 * @return
+	 */
+	public IType[] getAllSubtypes(IType type) {
+		int id = idOf(type);
+		if (!isDefined(id))
+			return nonNull(type.getAllSubtypes());
+		return decode(descendants[id]);
+	}
+
+	/**
+	 * the implementing classes of the interface type, as
+	 * <code>getImplementingClasses()</code> gives them, and their subtypes
+	 * @param type
+	 * @return
+	 */
+	public IType[] getImplementingClassClosure(IType type) {
+		int id = idOf(type);
+		if (!isDefined(id)) {
+			List<IType> closure = new ArrayList<IType>();
+			for (IType implementingClass : nonNull(type.getImplementingClasses())) {
+				closure.add(implementingClass);
+				for (IType subtype : nonNull(implementingClass.getAllSubtypes())) {
+					closure.add(subtype);
+				}
+			}
+			return closure.toArray(new IType[closure.size()]);
+		}
+		return decode(implementingClasses[id]);
+	}
+
+	/**
+	 * the types whose ids are in typeIds
+	 * @param typeIds
+	 * @return
+	 */
+	public IType[] decode(BitSet typeIds) {
+		IType[] decoded = new IType[typeIds.cardinality()];
+		int i = 0;
+		for (int id = typeIds.nextSetBit(0); id >= 0; id = typeIds.nextSetBit(id + 1)) {
+			decoded[i++] = types.get(id);
+		}
+		return decoded;
+	}
+
+	/**
+	 * the transitive reduction of the hierarchy of the defined types
+	 */
+	private synchronized void computeReduction() {
+		if (directSubtypes != null)
+			return;
+		BitSet[] reduction = new BitSet[definedTypeCount];
+		directSupertypes = new BitSet[definedTypeCount];
+		for (int id = 0; id < definedTypeCount; id++) {
+			directSupertypes[id] = new BitSet();
+		}
+		for (int id = 0; id < definedTypeCount; id++) {
+			BitSet direct = descendants[id].get(0, definedTypeCount);
+			BitSet indirect = new BitSet(definedTypeCount);
+			for (int descendant = direct.nextSetBit(0); descendant >= 0; descendant = direct
+					.nextSetBit(descendant + 1)) {
+				indirect.or(descendants[descendant]);
+			}
+			direct.andNot(indirect);
+			reduction[id] = direct;
+			for (int subtype = direct.nextSetBit(0); subtype >= 0; subtype = direct.nextSetBit(subtype + 1)) {
+				directSupertypes[subtype].set(id);
+			}
+		}
+		directSubtypes = reduction;
+	}
+
+	private int intern(IType type) {
+		Integer id = ids.get(type);
+		if (id == null) {
+			id = types.size();
+			ids.put(type, id);
+			types.add(type);
+		}
+		return id;
+	}
+
+	private BitSet encode(IType[] someTypes) {
+		BitSet encoded = new BitSet();
+		for (IType type : nonNull(someTypes)) {
+			if (type != null)
+				encoded.set(intern(type));
+		}
+		return encoded;
+	}
+
+	private static IType[] nonNull(IType[] someTypes) {
+		return someTypes == null ? new IType[0] : someTypes;
+	}
+
+	private static boolean contains(IType[] someTypes, IType type) {
+		for (IType aType : nonNull(someTypes)) {
+			if (aType.equals(type))
+				return true;
+		}
+		return false;
+	}
+}
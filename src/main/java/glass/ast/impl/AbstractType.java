@@ -0,0 +1,211 @@
+package glass.ast.impl;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import glass.ast.IMethod;
+import glass.ast.IType;
+
+/**
+ * The hierarchy queries of the types of a project, computed from the types right
+ * above and right below each type: <code>getAllSupertypes()</code>,
+ * <code>getAllSubtypes()</code>, <code>getImplementingClasses()</code> and the
+ * methods, local and inherited.
+ *
+ * They are computed once, under the lock of the project, and cached until
+ * <code>resetHierarchy()</code> is called. The cached arrays are copied when
+ * returned.
+ *
+ * @param <T> the types of the project
+ */
+public abstract class AbstractType<T extends AbstractType<T>> implements IType {
+
+	private Object lock;
+
+	private volatile IType[] allSupertypes = null;
+
+	private volatile IType[] allSubtypes = null;
+
+	private volatile IType[] implementingClasses = null;
+
+	/**
+	 * the methods of the type, by signature id, and those its subtypes inherit (all
+	 * but the private ones, and the static ones of an interface)
+	 */
+	private volatile Map<Integer, IMethod> methods = null;
+
+	private volatile Map<Integer, IMethod> inheritedMethods = null;
+
+	/**
+	 * @param lock the lock of the project, under which the queries are computed
+	 */
+	protected AbstractType(Object lock) {
+		this.lock = lock;
+	}
+
+	/**
+	 * the types right above this one, when they can be found
+	 * @return
+	 */
+	abstract List<T> directSupertypes();
+
+	/**
+	 * the types of the project right below this one
+	 * @return
+	 */
+	abstract List<T> directSubtypes();
+
+	/**
+	 * the local methods of the type, which are not copied
+	 * @return
+	 */
+	abstract IMethod[] localMethods();
+
+	/**
+	 * whether the subtypes inherit the local method at index in
+	 * <code>localMethods()</code>
+	 * @param index
+	 * @return
+	 */
+	abstract boolean isInheritable(int index);
+
+	@Override
+	public IMethod[] getMethods() {
+		return this.methods().values().toArray(new IMethod[0]);
+	}
+
+	@Override
+	public IType[] getAllSubtypes() {
+		IType[] subtypes = this.allSubtypes;
+		if (subtypes == null) {
+			synchronized (this.lock) {
+				if (this.allSubtypes == null) {
+					Set<IType> closure = new LinkedHashSet<IType>();
+					for (T subtype : this.directSubtypes()) {
+						if (closure.add(subtype))
+							closure.addAll(Arrays.asList(subtype.getAllSubtypes()));
+					}
+					this.allSubtypes = closure.toArray(new IType[closure.size()]);
+				}
+				subtypes = this.allSubtypes;
+			}
+		}
+		return subtypes.clone();
+	}
+
+	@Override
+	public IType[] getAllSupertypes() {
+		IType[] supertypes = this.allSupertypes;
+		if (supertypes == null) {
+			synchronized (this.lock) {
+				if (this.allSupertypes == null) {
+					Set<IType> closure = new LinkedHashSet<IType>();
+					for (T supertype : this.directSupertypes()) {
+						if (closure.add(supertype))
+							closure.addAll(Arrays.asList(supertype.getAllSupertypes()));
+					}
+					this.allSupertypes = closure.toArray(new IType[closure.size()]);
+				}
+				supertypes = this.allSupertypes;
+			}
+		}
+		return supertypes.clone();
+	}
+
+	/**
+	 * the classes of the project that implement the interface directly. Empty for a
+	 * class
+	 */
+	@Override
+	public IType[] getImplementingClasses() {
+		IType[] classes = this.implementingClasses;
+		if (classes == null) {
+			synchronized (this.lock) {
+				if (this.implementingClasses == null) {
+					List<IType> implementing = new ArrayList<IType>();
+					if (this.isInterface()) {
+						for (T subtype : this.directSubtypes()) {
+							if (!subtype.isInterface())
+								implementing.add(subtype);
+						}
+					}
+					this.implementingClasses = implementing.toArray(new IType[implementing.size()]);
+				}
+				classes = this.implementingClasses;
+			}
+		}
+		return classes.clone();
+	}
+
+	/**
+	 * the local methods, then the methods inherited from the direct supertypes that
+	 * the type does not redefine, by signature id
+	 */
+	private Map<Integer, IMethod> methods() {
+		Map<Integer, IMethod> typeMethods = this.methods;
+		if (typeMethods == null) {
+			synchronized (this.lock) {
+				if (this.methods == null) {
+					Map<Integer, IMethod> all = new LinkedHashMap<Integer, IMethod>();
+					Map<Integer, IMethod> inheritable = new LinkedHashMap<Integer, IMethod>();
+					IMethod[] local = this.localMethods();
+					for (int i = 0; i < local.length; i++) {
+						all.putIfAbsent(local[i].getSignatureId(), local[i]);
+						if (this.isInheritable(i))
+							inheritable.putIfAbsent(local[i].getSignatureId(), local[i]);
+					}
+					for (AbstractType<T> supertype : this.directSupertypes()) {
+						supertype.methods();
+						for (Map.Entry<Integer, IMethod> entry : supertype.inheritedMethods.entrySet()) {
+							if (all.putIfAbsent(entry.getKey(), entry.getValue()) == null)
+								inheritable.put(entry.getKey(), entry.getValue());
+						}
+					}
+					this.inheritedMethods = inheritable;
+					this.methods = all;
+				}
+				typeMethods = this.methods;
+			}
+		}
+		return typeMethods;
+	}
+
+	@Override
+	public boolean hasSamePublicInterface(IType comparedType) {
+		Set<Integer> publicComparedMethods = Stream.of(comparedType.getMethods()).
+				filter(m -> m.isPublic()).
+				map(m -> m.getSignatureId()).
+				collect(Collectors.toSet());
+
+		Set<Integer> publicLocalMethods = Stream.of(this.getMethods()).
+				filter(m -> m.isPublic()).
+				map(m -> m.getSignatureId()).
+				collect(Collectors.toSet());
+
+		return publicLocalMethods.equals(publicComparedMethods);
+	}
+
+	/**
+	 * forgets the queries that depend on the hierarchy. Called under the lock of the
+	 * project
+	 */
+	void resetHierarchy() {
+		this.allSupertypes = null;
+		this.allSubtypes = null;
+		this.implementingClasses = null;
+		this.methods = null;
+		this.inheritedMethods = null;
+	}
+
+	@Override
+	public String toString() {
+		return this.getFullyQualifiedName();
+	}
+}
@@ -0,0 +1,55 @@
+package glass.ast.impl;
+
+import glass.ast.IField;
+
+/**
+ * A field read from a class file by a <code>BytecodeProject</code>, as seen from
+ * one of the methods of its class that access it (its location).
+ *
+ * The types of a class file are resolved, so the type signature follows the
+ * conventions of JDT for binary fields, e.g. "Ljava.lang.String;" or
+ * "Ljava.util.List&lt;Ljava.lang.String;&gt;;", which
+ * <code>BytecodeProject.findType(...)</code> accepts.
+ */
+public class BytecodeField implements IField {
+
+	private ClassFile.Member field;
+
+	private String location;
+
+	BytecodeField(ClassFile.Member field, String location) {
+		this.field = field;
+		this.location = location;
+	}
+
+	@Override
+	public boolean hasUnresolvedSignature() {
+		return false;
+	}
+
+	@Override
+	public String getTypeSignature() {
+		String typeSignature = this.field.signature != null ? this.field.signature : this.field.descriptor;
+		return typeSignature.replace('/', '.');
+	}
+
+	@Override
+	public String getElementName() {
+		return this.field.name;
+	}
+
+	/**
+	 * true if the field has a class or interface type, rather than a primitive type,
+	 * an array type or a type variable
+	 */
+	@Override
+	public boolean isClassType() {
+		String typeSignature = this.field.signature != null ? this.field.signature : this.field.descriptor;
+		return typeSignature.charAt(0) == 'L';
+	}
+
+	@Override
+	public String getLocation() {
+		return this.location;
+	}
+}
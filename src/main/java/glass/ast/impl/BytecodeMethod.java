@@ -0,0 +1,109 @@
+package glass.ast.impl;
+
+import java.util.List;
+
+import glass.ast.IMethod;
+import glass.ast.SignatureTable;
+
+/**
+ * A method read from a class file by a <code>BytecodeProject</code>.
+ *
+ * The signature is the return type followed by the name and the parameter types,
+ * as in <code>SpoonMethod</code>, but with the erased types of the descriptor,
+ * e.g. "java.lang.String format(java.lang.String,java.lang.Object[])".
+ */
+public class BytecodeMethod implements IMethod {
+
+	private BytecodeType declaringType;
+
+	private ClassFile.Member method;
+
+	private String signature;
+
+	private int signatureId = -1;
+
+	BytecodeMethod(BytecodeType declaringType, ClassFile.Member method) {
+		this.declaringType = declaringType;
+		this.method = method;
+		this.signature = Descriptors.returnType(method.descriptor) + " " + method.name + "("
+				+ String.join(",", Descriptors.parameterTypes(method.descriptor)) + ")";
+	}
+
+	@Override
+	public String getSignature() {
+		return this.signature;
+	}
+
+	@Override
+	public int getSignatureId() {
+		if (this.signatureId < 0) {
+			this.signatureId = SignatureTable.getShared().intern(this.signature);
+		}
+		return this.signatureId;
+	}
+
+	@Override
+	public String getFullSignature() {
+		return this.declaringType.getFullyQualifiedName() + "." + this.signature;
+	}
+
+	@Override
+	public boolean isSimilar(IMethod comparedMethod) {
+		return this.getSignatureId() == comparedMethod.getSignatureId();
+	}
+
+	@Override
+	public String getElementName() {
+		return this.method.name;
+	}
+
+	/**
+	 * returns the names of the parameters, when the class file has them (compiled
+	 * with -parameters or -g), and arg0, arg1, ... otherwise
+	 */
+	@Override
+	public String[] getParameterNames() {
+		List<String> parameterTypes = Descriptors.parameterTypes(this.method.descriptor);
+		String[] names = new String[parameterTypes.size()];
+		for (int i = 0; i < names.length; i++) {
+			String name = this.method.parameterNames != null && i < this.method.parameterNames.length
+					? this.method.parameterNames[i]
+					: null;
+			names[i] = name != null ? name : "arg" + i;
+		}
+		return names;
+	}
+
+	@Override
+	public String getReturnType() {
+		return Descriptors.returnType(this.method.descriptor);
+	}
+
+	@Override
+	public boolean isConstructor() {
+		return false; // the constructors are not read
+	}
+
+	@Override
+	public boolean isPublic() {
+		return this.method.is(ClassFile.ACC_PUBLIC);
+	}
+
+	@Override
+	public boolean isProtected() {
+		return this.method.is(ClassFile.ACC_PROTECTED);
+	}
+
+	boolean isPrivate() {
+		return this.method.is(ClassFile.ACC_PRIVATE);
+	}
+
+	boolean isStatic() {
+		return this.method.is(ClassFile.ACC_STATIC);
+	}
+
+	@Override
+	public String toString() {
+		return this.getFullSignature();
+	}
+}
@@ -0,0 +1,233 @@
+package glass.ast.impl;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import glass.ast.IProject;
+import glass.ast.IType;
+
+/**
+ * A project read from compiled classes (directories of class files, or jars),
+ * rather than from a source model, so that build outputs can be analysed without
+ * building a Spoon model first.
+ *
+ * The class files of the project are parsed when the project is created, keeping
+ * only the hierarchy, the signatures and flags of the methods, and the types of the
+ * fields. The class files of the other types (libraries, the JDK) are parsed when
+ * they are first needed, e.g. as a supertype, from the classpath given to the
+ * project, and then from the platform. As for <code>SpoonProject</code>, the
+ * queries are computed once, under the lock of the project, and cached.
+ *
+ * The project keeps the jars of its libraries open, to read their class files on
+ * demand, until it is closed.
+ */
+public class BytecodeProject implements IProject, Closeable {
+
+	private Map<String, BytecodeType> types = new HashMap<String, BytecodeType>();
+
+	/**
+	 * the types read from the project, rather than from its libraries
+	 */
+	private List<BytecodeType> projectTypes = new ArrayList<BytecodeType>();
+
+	private List<IType> definedTypes;
+
+	private URLClassLoader libraries;
+
+	private Map<BytecodeType, List<BytecodeType>> directSubtypes = null;
+
+	/**
+	 * @param roots the directories of class files and the jars of the project
+	 * @throws IOException
+	 */
+	public BytecodeProject(Collection<Path> roots) throws IOException {
+		this(roots, Collections.emptyList());
+	}
+
+	/**
+	 * @param roots the directories of class files and the jars of the project
+	 * @param classpath the directories and jars of the libraries of the project
+	 * @throws IOException
+	 */
+	public BytecodeProject(Collection<Path> roots, Collection<Path> classpath) throws IOException {
+		URL[] urls = new URL[classpath.size()];
+		int i = 0;
+		for (Path entry : classpath) {
+			urls[i++] = entry.toUri().toURL();
+		}
+		this.libraries = new URLClassLoader(urls, ClassLoader.getPlatformClassLoader());
+
+		// 1. parse the class files of the project. The libraries are closed if one
+		// cannot be read, as the project is not returned
+		try {
+			for (Path root : roots) {
+				if (Files.isDirectory(root))
+					readDirectory(root);
+				else
+					readJar(root);
+			}
+		} catch (IOException | RuntimeException e) {
+			this.libraries.close();
+			throw e;
+		}
+
+		// 2. the defined types: the classes and interfaces, except the anonymous
+		// classes, the annotations, and the classes generated by the compiler
+		List<IType> defined = new ArrayList<IType>();
+		for (BytecodeType type : projectTypes) {
+			ClassFile classFile = type.getClassFile();
+			if (!type.isAnonymous() && !classFile.is(ClassFile.ACC_ANNOTATION)
+					&& !classFile.is(ClassFile.ACC_SYNTHETIC))
+				defined.add(type);
+		}
+		defined.sort((left, right) -> left.getFullyQualifiedName().compareTo(right.getFullyQualifiedName()));
+		this.definedTypes = Collections.unmodifiableList(defined);
+	}
+
+	private void readDirectory(Path root) throws IOException {
+		List<Path> classFiles;
+		try (Stream<Path> files = Files.walk(root)) {
+			classFiles = files.filter(file -> isClassFile(file.toString())).collect(Collectors.toList());
+		}
+		for (Path file : classFiles) {
+			try (InputStream input = Files.newInputStream(file)) {
+				add(ClassFile.parse(input));
+			}
+		}
+	}
+
+	private void readJar(Path jar) throws IOException {
+		try (ZipFile zip = new ZipFile(jar.toFile())) {
+			Enumeration<? extends ZipEntry> entries = zip.entries();
+			while (entries.hasMoreElements()) {
+				ZipEntry entry = entries.nextElement();
+				// the classes of the other versions of a multi-release jar are left out
+				if (entry.isDirectory() || !isClassFile(entry.getName()) || entry.getName().startsWith("META-INF/"))
+					continue;
+				try (InputStream input = zip.getInputStream(entry)) {
+					add(ClassFile.parse(input));
+				}
+			}
+		}
+	}
+
+	private static boolean isClassFile(String fileName) {
+		return fileName.endsWith(".class") && !fileName.endsWith("module-info.class")
+				&& !fileName.endsWith("package-info.class");
+	}
+
+	private void add(ClassFile classFile) {
+		if (!classFile.is(ClassFile.ACC_MODULE) && !types.containsKey(classFile.name)) {
+			BytecodeType type = new BytecodeType(this, classFile);
+			types.put(classFile.name, type);
+			projectTypes.add(type);
+		}
+	}
+
+	/**
+	 * the queries are computed under the lock of the project, and then cached
+	 */
+	@Override
+	public boolean isThreadSafe() {
+		return true;
+	}
+
+	/**
+	 * closes the jars of the libraries. The types already read remain, but the
+	 * class files of the other library types cannot be found anymore
+	 */
+	@Override
+	public synchronized void close() throws IOException {
+		libraries.close();
+	}
+
+	@Override
+	public Collection<IType> getDefinedTypes() {
+		return definedTypes;
+	}
+
+	/**
+	 * returns the type whose fully qualified name is typeName, in the project or in
+	 * its libraries. The nested types may be separated by '.' or by '$'. A resolved
+	 * type signature (e.g. "Ljava.util.List&lt;Ljava.lang.String;&gt;;", as returned
+	 * by <code>BytecodeField.getTypeSignature()</code>) is accepted as well
+	 */
+	@Override
+	public synchronized IType findType(String typeName) {
+		String name = typeName;
+		if (name.startsWith("L") && name.endsWith(";")) {
+			name = name.substring(1, name.length() - 1);
+			if (name.indexOf('<') >= 0)
+				name = name.substring(0, name.indexOf('<'));
+		}
+		while (true) {
+			BytecodeType type = typeFor(name);
+			if (type != null)
+				return type;
+			// try again, assuming the last segment is a nested type
+			int lastDot = name.lastIndexOf('.');
+			if (lastDot < 0)
+				return null;
+			name = name.substring(0, lastDot) + "$" + name.substring(lastDot + 1);
+		}
+	}
+
+	/**
+	 * returns the type whose binary name is name, reading its class file from the
+	 * libraries the first time
+	 * @param name
+	 * @return null if there is no such class file
+	 */
+	synchronized BytecodeType typeFor(String name) {
+		if (types.containsKey(name))
+			return types.get(name);
+		BytecodeType type = null;
+		try (InputStream input = libraries.getResourceAsStream(name.replace('.', '/') + ".class")) {
+			if (input != null) {
+				ClassFile classFile = ClassFile.parse(input);
+				if (classFile.name.equals(name))
+					type = new BytecodeType(this, classFile);
+			}
+		} catch (IOException e) {
+			type = null;
+		}
+		// the types that cannot be found are remembered as well
+		types.put(name, type);
+		return type;
+	}
+
+	/**
+	 * the types of the project right below type, anonymous classes included
+	 * @param type
+	 * @return
+	 */
+	synchronized List<BytecodeType> directSubtypesOf(BytecodeType type) {
+		if (directSubtypes == null) {
+			directSubtypes = new HashMap<BytecodeType, List<BytecodeType>>();
+			for (BytecodeType subtype : projectTypes) {
+				if (subtype.getClassFile().is(ClassFile.ACC_ANNOTATION))
+					continue;
+				for (BytecodeType supertype : subtype.directSupertypes()) {
+					directSubtypes.computeIfAbsent(supertype, key -> new ArrayList<BytecodeType>()).add(subtype);
+				}
+			}
+		}
+		return directSubtypes.getOrDefault(type, Collections.emptyList());
+	}
+}
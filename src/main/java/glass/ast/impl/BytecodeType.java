@@ -0,0 +1,313 @@
+package glass.ast.impl;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import glass.ast.IField;
+import glass.ast.IMethod;
+import glass.ast.IType;
+
+/**
+ * A type of a <code>BytecodeProject</code>, read from its class file.
+ *
+ * As for <code>SpoonType</code>, the hierarchy queries of <code>AbstractType</code>,
+ * the local methods, the fields and the resolved type names are computed once,
+ * under the lock of the project, and cached. The class files cannot be changed, so
+ * the methods that change the hierarchy throw UnsupportedOperationException.
+ */
+public class BytecodeType extends AbstractType<BytecodeType> {
+
+	private static final String JAVA_LANG_OBJECT = "java.lang.Object";
+
+	private BytecodeProject project;
+
+	private ClassFile classFile;
+
+	private volatile BytecodeMethod[] localMethods = null;
+
+	private volatile IField[] fields = null;
+
+	private volatile List<BytecodeType> directSupertypes = null;
+
+	private Map<String, String[][]> resolvedTypes = new HashMap<String, String[][]>();
+
+	BytecodeType(BytecodeProject project, ClassFile classFile) {
+		super(project);
+		this.project = project;
+		this.classFile = classFile;
+	}
+
+	ClassFile getClassFile() {
+		return this.classFile;
+	}
+
+	@Override
+	public boolean isAnonymous() {
+		return "".equals(this.classFile.innerName);
+	}
+
+	@Override
+	public boolean isInterface() {
+		return this.classFile.is(ClassFile.ACC_INTERFACE);
+	}
+
+	/**
+	 * the methods declared in the class file, except the constructors, the static
+	 * initializer, and the synthetic and bridge methods generated by the compiler
+	 */
+	@Override
+	public IMethod[] getLocalMethods() {
+		return this.localMethods().clone();
+	}
+
+	@Override
+	BytecodeMethod[] localMethods() {
+		BytecodeMethod[] local = this.localMethods;
+		if (local == null) {
+			synchronized (this.project) {
+				if (this.localMethods == null) {
+					List<BytecodeMethod> wrappers = new ArrayList<BytecodeMethod>();
+					for (ClassFile.Member method : this.classFile.methods) {
+						if (!this.isGenerated(method))
+							wrappers.add(new BytecodeMethod(this, method));
+					}
+					this.localMethods = wrappers.toArray(new BytecodeMethod[wrappers.size()]);
+				}
+				local = this.localMethods;
+			}
+		}
+		return local;
+	}
+
+	@Override
+	boolean isInheritable(int index) {
+		BytecodeMethod method = this.localMethods()[index];
+		return !method.isPrivate() && !(this.isInterface() && method.isStatic());
+	}
+
+	private boolean isGenerated(ClassFile.Member method) {
+		if (method.name.startsWith("<") || method.is(ClassFile.ACC_SYNTHETIC) || method.is(ClassFile.ACC_BRIDGE))
+			return true;
+		// the values() and valueOf(String) methods of an enum are implicitly declared
+		return this.classFile.is(ClassFile.ACC_ENUM) && method.is(ClassFile.ACC_STATIC)
+				&& (method.name.equals("values") && method.descriptor.startsWith("()")
+						|| method.name.equals("valueOf") && method.descriptor.startsWith("(Ljava/lang/String;)"));
+	}
+
+	/**
+	 * the local method in which the code of method is written: method itself, or the
+	 * method enclosing it for the body of a lambda expression, compiled by javac into
+	 * a synthetic method named lambda$&lt;enclosing method&gt;$&lt;index&gt;
+	 * @param method
+	 * @return null if the code is not part of a local method
+	 */
+	private String locationOf(ClassFile.Member method) {
+		if (!this.isGenerated(method))
+			return method.name;
+		if (!method.is(ClassFile.ACC_SYNTHETIC) || !method.name.startsWith("lambda$"))
+			return null;
+		int end = method.name.indexOf('$', "lambda$".length());
+		String enclosing = end < 0 ? null : method.name.substring("lambda$".length(), end);
+		// the lambda expressions of the constructors and of the static initializer
+		return "new".equals(enclosing) || "static".equals(enclosing) ? null : enclosing;
+	}
+
+	@Override
+	public String getPackage() {
+		int lastDot = this.classFile.name.lastIndexOf('.');
+		return lastDot < 0 ? "" : this.classFile.name.substring(0, lastDot);
+	}
+
+	/**
+	 * returns the fields declared by the type, once per local method that accesses
+	 * them (the location of the field), or once with no location if no method
+	 * accesses them. The fields generated by the compiler are left out
+	 */
+	@Override
+	public IField[] getFields() {
+		IField[] typeFields = this.fields;
+		if (typeFields == null) {
+			synchronized (this.project) {
+				if (this.fields == null) {
+					List<IField> wrappers = new ArrayList<IField>();
+					for (ClassFile.Member field : this.classFile.fields) {
+						// e.g. the reference to the enclosing instance, or the array of enum constants
+						if (field.is(ClassFile.ACC_SYNTHETIC))
+							continue;
+						Set<String> locations = new LinkedHashSet<String>();
+						for (ClassFile.Member method : this.classFile.methods) {
+							String location = this.locationOf(method);
+							if (location != null && method.accessedFields.contains(field.name))
+								locations.add(location);
+						}
+						if (locations.isEmpty())
+							wrappers.add(new BytecodeField(field, null));
+						for (String location : locations) {
+							wrappers.add(new BytecodeField(field, location));
+						}
+					}
+					this.fields = wrappers.toArray(new IField[wrappers.size()]);
+				}
+				typeFields = this.fields;
+			}
+		}
+		return typeFields.clone();
+	}
+
+	@Override
+	public String getElementName() {
+		if (this.classFile.innerName != null)
+			return this.classFile.innerName;
+		return this.classFile.name.substring(this.classFile.name.lastIndexOf('.') + 1);
+	}
+
+	@Override
+	public String getFullyQualifiedName() {
+		return this.classFile.name;
+	}
+
+	@Override
+	public String getFullyQualifiedParameterizedName() {
+		String name = this.classFile.name.replace('$', '.');
+		List<String> parameters = Descriptors.typeParameters(this.classFile.signature);
+		if (parameters.isEmpty())
+			return name;
+		return name + parameters.stream().collect(Collectors.joining(", ", "<", ">"));
+	}
+
+	/**
+	 * resolves typeName by looking, in this order, for a member type of the type, of
+	 * its enclosing types or of their supertypes, a type named in the class file, a
+	 * type of the same package, a type of java.lang, and finally a type whose fully
+	 * qualified name is typeName. The imports are not part of class files: the types
+	 * named in the constant pool stand for them, so a type imported but not used by
+	 * the code is not found
+	 */
+	@Override
+	public String[][] resolveType(String typeName) {
+		synchronized (this.project) {
+			if (!this.resolvedTypes.containsKey(typeName))
+				this.resolvedTypes.put(typeName, this.resolve(typeName));
+			String[][] resolved = this.resolvedTypes.get(typeName);
+			return resolved == null ? null : new String[][] { resolved[0].clone() };
+		}
+	}
+
+	private String[][] resolve(String typeName) {
+		// the type arguments, if any, do not take part in the resolution
+		String name = typeName.trim();
+		if (name.indexOf('<') >= 0)
+			name = name.substring(0, name.indexOf('<'));
+		String memberName = name.replace('.', '$');
+
+		// 1. the member types
+		for (BytecodeType enclosing = this; enclosing != null; enclosing = enclosing.enclosingType()) {
+			List<IType> scope = new ArrayList<IType>();
+			scope.add(enclosing);
+			for (IType supertype : enclosing.getAllSupertypes()) {
+				scope.add(supertype);
+			}
+			for (IType candidate : scope) {
+				BytecodeType member = this.project.typeFor(candidate.getFullyQualifiedName() + "$" + memberName);
+				if (member != null)
+					return member.resolvedName();
+			}
+		}
+
+		// 2. the types named in the class file, in place of the imports
+		int firstDot = name.indexOf('.');
+		String simpleName = firstDot < 0 ? name : name.substring(0, firstDot);
+		for (String referenced : this.classFile.referencedClassNames) {
+			if (referenced.endsWith("." + simpleName) || referenced.endsWith("$" + simpleName)) {
+				BytecodeType found = (BytecodeType) this.project.findType(referenced + name.substring(simpleName.length()));
+				if (found != null)
+					return found.resolvedName();
+			}
+		}
+
+		// 3. the package, java.lang, and the fully qualified names
+		String typePackage = this.getPackage();
+		for (String candidate : new String[] { typePackage.isEmpty() ? name : typePackage + "." + name,
+				"java.lang." + name, name }) {
+			BytecodeType found = (BytecodeType) this.project.findType(candidate);
+			if (found != null)
+				return found.resolvedName();
+		}
+		return null;
+	}
+
+	/**
+	 * the package and the type-qualified name of the type, with '.' as enclosing
+	 * type separator
+	 */
+	private String[][] resolvedName() {
+		String typePackage = this.getPackage();
+		String name = typePackage.isEmpty() ? this.classFile.name
+				: this.classFile.name.substring(typePackage.length() + 1);
+		return new String[][] { { typePackage, name.replace('$', '.') } };
+	}
+
+	private BytecodeType enclosingType() {
+		int lastDollar = this.classFile.name.lastIndexOf('$');
+		if (this.classFile.innerName == null || lastDollar < 0)
+			return null;
+		return this.project.typeFor(this.classFile.name.substring(0, lastDollar));
+	}
+
+	/**
+	 * the types right above this one: its superclass and its superinterfaces, when
+	 * their class files can be found. The class files of the interfaces name
+	 * java.lang.Object as their superclass, which is left out, as in the sources
+	 * @return
+	 */
+	@Override
+	List<BytecodeType> directSupertypes() {
+		List<BytecodeType> supertypes = this.directSupertypes;
+		if (supertypes == null) {
+			synchronized (this.project) {
+				if (this.directSupertypes == null) {
+					List<BytecodeType> direct = new ArrayList<BytecodeType>();
+					String superName = this.classFile.superName;
+					if (superName != null && !(this.isInterface() && JAVA_LANG_OBJECT.equals(superName)))
+						this.addIfFound(direct, this.project.typeFor(superName));
+					for (String interfaceName : this.classFile.interfaceNames) {
+						this.addIfFound(direct, this.project.typeFor(interfaceName));
+					}
+					this.directSupertypes = direct;
+				}
+				supertypes = this.directSupertypes;
+			}
+		}
+		return supertypes;
+	}
+
+	@Override
+	List<BytecodeType> directSubtypes() {
+		return this.project.directSubtypesOf(this);
+	}
+
+	private void addIfFound(List<BytecodeType> supertypes, BytecodeType supertype) {
+		if (supertype != null && supertype != this && !supertypes.contains(supertype))
+			supertypes.add(supertype);
+	}
+
+	@Override
+	public void addSuperInterface(IType superInterface) {
+		throw new UnsupportedOperationException("A type read from a class file cannot be modified");
+	}
+
+	@Override
+	public void changeSuperclass(IType newSuperclass) {
+		throw new UnsupportedOperationException("A type read from a class file cannot be modified");
+	}
+
+	@Override
+	public void addSubType(IType subType) {
+		throw new UnsupportedOperationException("A type read from a class file cannot be modified");
+	}
+}
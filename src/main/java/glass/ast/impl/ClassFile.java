@@ -0,0 +1,399 @@
+package glass.ast.impl;
+
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * What a <code>BytecodeProject</code> needs from a class file, read by a minimal
+ * parser of the class file format (JVMS, chapter 4): the names of the class, of its
+ * superclass and of its interfaces, its flags, its methods and its fields, and, for
+ * each method, the fields of the class that its code reads or writes.
+ *
+ * The names are binary names with '.' as package separator and '$' as enclosing
+ * type separator, e.g. "java.util.Map$Entry".
+ */
+final class ClassFile {
+
+	static final int ACC_PUBLIC = 0x0001;
+	static final int ACC_PRIVATE = 0x0002;
+	static final int ACC_PROTECTED = 0x0004;
+	static final int ACC_STATIC = 0x0008;
+	static final int ACC_BRIDGE = 0x0040;
+	static final int ACC_INTERFACE = 0x0200;
+	static final int ACC_SYNTHETIC = 0x1000;
+	static final int ACC_ANNOTATION = 0x2000;
+	static final int ACC_ENUM = 0x4000;
+	static final int ACC_MODULE = 0x8000;
+
+	private static final int MAGIC = 0xCAFEBABE;
+
+	// the tags of the constant pool entries
+	private static final int UTF8 = 1;
+	private static final int INTEGER = 3;
+	private static final int FLOAT = 4;
+	private static final int LONG = 5;
+	private static final int DOUBLE = 6;
+	private static final int CLASS = 7;
+	private static final int STRING = 8;
+	private static final int FIELD_REF = 9;
+	private static final int METHOD_REF = 10;
+	private static final int INTERFACE_METHOD_REF = 11;
+	private static final int NAME_AND_TYPE = 12;
+	private static final int METHOD_HANDLE = 15;
+	private static final int METHOD_TYPE = 16;
+	private static final int DYNAMIC = 17;
+	private static final int INVOKE_DYNAMIC = 18;
+	private static final int MODULE = 19;
+	private static final int PACKAGE = 20;
+
+	static final class Member {
+		int accessFlags;
+		String name;
+		String descriptor;
+		/**
+		 * the generic signature, or null
+		 */
+		String signature;
+		/**
+		 * the names of the parameters of a method, when the class file has them
+		 */
+		String[] parameterNames;
+		/**
+		 * the fields of the class accessed by the code of a method
+		 */
+		Set<String> accessedFields = new LinkedHashSet<String>();
+
+		boolean is(int flag) {
+			return (accessFlags & flag) != 0;
+		}
+	}
+
+	int accessFlags;
+	String name;
+	String superName;
+	String[] interfaceNames;
+	String signature;
+	/**
+	 * the simple name of a nested class, as given by its InnerClasses entry, "" for
+	 * an anonymous class, or null for a top-level class
+	 */
+	String innerName;
+	/**
+	 * the classes named in the constant pool, which stand for the imports of the
+	 * source file
+	 */
+	Set<String> referencedClassNames = new LinkedHashSet<String>();
+	List<Member> fields = new ArrayList<Member>();
+	List<Member> methods = new ArrayList<Member>();
+
+	// the constant pool
+	private int[] tags;
+	private int[] first;
+	private int[] second;
+	private String[] strings;
+
+	private ClassFile() {
+	}
+
+	boolean is(int flag) {
+		return (accessFlags & flag) != 0;
+	}
+
+	/**
+	 * parses a class file. The input is not closed
+	 * @param input
+	 * @return
+	 * @throws IOException if input is not a class file
+	 */
+	static ClassFile parse(InputStream input) throws IOException {
+		DataInputStream data = new DataInputStream(input);
+		if (data.readInt() != MAGIC)
+			throw new IOException("Not a class file");
+		data.readUnsignedShort(); // minor version
+		data.readUnsignedShort(); // major version
+
+		ClassFile classFile = new ClassFile();
+		classFile.readConstantPool(data);
+
+		// 1. the class and its supertypes
+		classFile.accessFlags = data.readUnsignedShort();
+		classFile.name = classFile.className(data.readUnsignedShort());
+		int superIndex = data.readUnsignedShort();
+		classFile.superName = superIndex == 0 ? null : classFile.className(superIndex);
+		classFile.interfaceNames = new String[data.readUnsignedShort()];
+		for (int i = 0; i < classFile.interfaceNames.length; i++) {
+			classFile.interfaceNames[i] = classFile.className(data.readUnsignedShort());
+		}
+
+		// 2. the members
+		int fieldCount = data.readUnsignedShort();
+		for (int i = 0; i < fieldCount; i++) {
+			classFile.fields.add(classFile.readMember(data));
+		}
+		int methodCount = data.readUnsignedShort();
+		for (int i = 0; i < methodCount; i++) {
+			classFile.methods.add(classFile.readMember(data));
+		}
+
+		// 3. the attributes of the class
+		int attributeCount = data.readUnsignedShort();
+		for (int i = 0; i < attributeCount; i++) {
+			String attributeName = classFile.strings[data.readUnsignedShort()];
+			int length = data.readInt();
+			if ("Signature".equals(attributeName)) {
+				classFile.signature = classFile.strings[data.readUnsignedShort()];
+			} else if ("InnerClasses".equals(attributeName)) {
+				int classCount = data.readUnsignedShort();
+				for (int j = 0; j < classCount; j++) {
+					int innerClassIndex = data.readUnsignedShort();
+					data.readUnsignedShort(); // outer class
+					int innerNameIndex = data.readUnsignedShort();
+					data.readUnsignedShort(); // inner class flags
+					if (classFile.name.equals(classFile.className(innerClassIndex)))
+						classFile.innerName = innerNameIndex == 0 ? "" : classFile.strings[innerNameIndex];
+				}
+			} else {
+				skipFully(data, length);
+			}
+		}
+
+		for (int i = 1; i < classFile.tags.length; i++) {
+			if (classFile.tags[i] == CLASS && classFile.strings[classFile.first[i]].charAt(0) != '[')
+				classFile.referencedClassNames.add(classFile.className(i));
+		}
+
+		// the constant pool is not needed anymore
+		classFile.tags = null;
+		classFile.first = null;
+		classFile.second = null;
+		classFile.strings = null;
+		return classFile;
+	}
+
+	private void readConstantPool(DataInputStream data) throws IOException {
+		int count = data.readUnsignedShort();
+		tags = new int[count];
+		first = new int[count];
+		second = new int[count];
+		strings = new String[count];
+		for (int i = 1; i < count; i++) {
+			int tag = data.readUnsignedByte();
+			tags[i] = tag;
+			switch (tag) {
+			case UTF8:
+				strings[i] = data.readUTF();
+				break;
+			case CLASS:
+			case STRING:
+			case METHOD_TYPE:
+			case MODULE:
+			case PACKAGE:
+				first[i] = data.readUnsignedShort();
+				break;
+			case FIELD_REF:
+			case METHOD_REF:
+			case INTERFACE_METHOD_REF:
+			case NAME_AND_TYPE:
+			case DYNAMIC:
+			case INVOKE_DYNAMIC:
+				first[i] = data.readUnsignedShort();
+				second[i] = data.readUnsignedShort();
+				break;
+			case INTEGER:
+			case FLOAT:
+				data.readInt();
+				break;
+			case LONG:
+			case DOUBLE:
+				// these take two entries
+				data.readLong();
+				i++;
+				break;
+			case METHOD_HANDLE:
+				data.readUnsignedByte();
+				data.readUnsignedShort();
+				break;
+			default:
+				throw new IOException("Unknown constant pool tag " + tag);
+			}
+		}
+	}
+
+	private Member readMember(DataInputStream data) throws IOException {
+		Member member = new Member();
+		member.accessFlags = data.readUnsignedShort();
+		member.name = strings[data.readUnsignedShort()];
+		member.descriptor = strings[data.readUnsignedShort()];
+		String[] localVariableNames = null;
+		int attributeCount = data.readUnsignedShort();
+		for (int i = 0; i < attributeCount; i++) {
+			String attributeName = strings[data.readUnsignedShort()];
+			int length = data.readInt();
+			if ("Signature".equals(attributeName)) {
+				member.signature = strings[data.readUnsignedShort()];
+			} else if ("MethodParameters".equals(attributeName)) {
+				member.parameterNames = new String[data.readUnsignedByte()];
+				for (int j = 0; j < member.parameterNames.length; j++) {
+					int nameIndex = data.readUnsignedShort();
+					data.readUnsignedShort(); // flags
+					member.parameterNames[j] = nameIndex == 0 ? null : strings[nameIndex];
+				}
+			} else if ("Code".equals(attributeName)) {
+				localVariableNames = readCode(data, member);
+			} else {
+				skipFully(data, length);
+			}
+		}
+
+		// without a MethodParameters attribute, the names of the parameters come from
+		// the local variables, if the class was compiled with debug information
+		if (member.parameterNames == null && localVariableNames != null) {
+			int slot = member.is(ACC_STATIC) ? 0 : 1;
+			List<String> parameterTypes = Descriptors.parameterTypes(member.descriptor);
+			member.parameterNames = new String[parameterTypes.size()];
+			for (int j = 0; j < parameterTypes.size(); j++) {
+				member.parameterNames[j] = slot < localVariableNames.length ? localVariableNames[slot] : null;
+				String type = parameterTypes.get(j);
+				slot += "long".equals(type) || "double".equals(type) ? 2 : 1;
+			}
+		}
+		return member;
+	}
+
+	/**
+	 * reads a Code attribute: records the fields of the class accessed by the
+	 * method, and returns the names of its local variables by slot, or null
+	 */
+	private String[] readCode(DataInputStream data, Member method) throws IOException {
+		data.readUnsignedShort(); // max stack
+		int maxLocals = data.readUnsignedShort();
+		byte[] code = new byte[data.readInt()];
+		data.readFully(code);
+		scanFieldAccesses(code, method);
+		skipFully(data, 8L * data.readUnsignedShort()); // exception table
+
+		String[] localVariableNames = null;
+		int attributeCount = data.readUnsignedShort();
+		for (int i = 0; i < attributeCount; i++) {
+			String attributeName = strings[data.readUnsignedShort()];
+			int length = data.readInt();
+			if ("LocalVariableTable".equals(attributeName)) {
+				if (localVariableNames == null)
+					localVariableNames = new String[maxLocals];
+				int variableCount = data.readUnsignedShort();
+				for (int j = 0; j < variableCount; j++) {
+					int startPc = data.readUnsignedShort();
+					data.readUnsignedShort(); // length
+					String variableName = strings[data.readUnsignedShort()];
+					data.readUnsignedShort(); // descriptor
+					int slot = data.readUnsignedShort();
+					// the parameters are the variables live from the start
+					if (startPc == 0 && slot < maxLocals)
+						localVariableNames[slot] = variableName;
+				}
+			} else {
+				skipFully(data, length);
+			}
+		}
+		return localVariableNames;
+	}
+
+	/**
+	 * walks the instructions of code, and records the fields of this class read or
+	 * written by getfield, putfield, getstatic and putstatic
+	 */
+	private void scanFieldAccesses(byte[] code, Member method) {
+		int pc = 0;
+		while (pc < code.length) {
+			int opcode = code[pc] & 0xFF;
+			if (opcode >= 0xB2 && opcode <= 0xB5) {
+				int fieldRef = ((code[pc + 1] & 0xFF) << 8) | (code[pc + 2] & 0xFF);
+				if (name.equals(className(first[fieldRef])))
+					method.accessedFields.add(strings[first[second[fieldRef]]]);
+			}
+			pc += instructionLength(code, pc);
+		}
+	}
+
+	private static int instructionLength(byte[] code, int pc) {
+		int opcode = code[pc] & 0xFF;
+		switch (opcode) {
+		case 0x10: // bipush
+		case 0x12: // ldc
+		case 0xA9: // ret
+		case 0xBC: // newarray
+			return 2;
+		case 0x11: // sipush
+		case 0x13: // ldc_w
+		case 0x14: // ldc2_w
+		case 0x84: // iinc
+		case 0xBB: // new
+		case 0xBD: // anewarray
+		case 0xC0: // checkcast
+		case 0xC1: // instanceof
+		case 0xC6: // ifnull
+		case 0xC7: // ifnonnull
+			return 3;
+		case 0xC5: // multianewarray
+			return 4;
+		case 0xB9: // invokeinterface
+		case 0xBA: // invokedynamic
+		case 0xC8: // goto_w
+		case 0xC9: // jsr_w
+			return 5;
+		case 0xC4: // wide
+			return (code[pc + 1] & 0xFF) == 0x84 ? 6 : 4;
+		case 0xAA: { // tableswitch
+			int operands = pc + 1 + ((4 - ((pc + 1) % 4)) % 4);
+			int low = readInt(code, operands + 4);
+			int high = readInt(code, operands + 8);
+			return operands - pc + 12 + 4 * (high - low + 1);
+		}
+		case 0xAB: { // lookupswitch
+			int operands = pc + 1 + ((4 - ((pc + 1) % 4)) % 4);
+			int pairCount = readInt(code, operands + 4);
+			return operands - pc + 8 + 8 * pairCount;
+		}
+		default:
+			if (opcode >= 0x15 && opcode <= 0x19 || opcode >= 0x36 && opcode <= 0x3A)
+				return 2; // loads and stores of a local variable
+			if (opcode >= 0x99 && opcode <= 0xA8 || opcode >= 0xB2 && opcode <= 0xB8)
+				return 3; // branches, field accesses and invocations
+			return 1;
+		}
+	}
+
+	/**
+	 * skips count bytes of data, or throws EOFException if it has fewer
+	 * @param data
+	 * @param count
+	 * @throws IOException
+	 */
+	private static void skipFully(DataInputStream data, long count) throws IOException {
+		while (count > 0) {
+			long skipped = data.skip(count);
+			if (skipped <= 0) {
+				// skip may stop short without being at the end: read a byte to tell
+				if (data.read() < 0)
+					throw new EOFException();
+				skipped = 1;
+			}
+			count -= skipped;
+		}
+	}
+
+	private static int readInt(byte[] code, int position) {
+		return ((code[position] & 0xFF) << 24) | ((code[position + 1] & 0xFF) << 16)
+				| ((code[position + 2] & 0xFF) << 8) | (code[position + 3] & 0xFF);
+	}
+
+	private String className(int classIndex) {
+		return strings[first[classIndex]].replace('/', '.');
+	}
+}
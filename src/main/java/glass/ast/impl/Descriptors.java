@@ -0,0 +1,129 @@
+package glass.ast.impl;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Decodes the type descriptors of the class file format (JVMS, section 4.3) into
+ * Java type names, e.g. "[Ljava/lang/String;" into "java.lang.String[]", and
+ * "(IJ)V" into the parameter types "int", "long" and the return type "void".
+ */
+final class Descriptors {
+
+	private Descriptors() {
+	}
+
+	/**
+	 * the Java names of the parameter types of a method descriptor
+	 * @param methodDescriptor
+	 * @return
+	 */
+	static List<String> parameterTypes(String methodDescriptor) {
+		List<String> types = new ArrayList<String>();
+		int position = 1; // skip '('
+		while (methodDescriptor.charAt(position) != ')') {
+			int end = endOfType(methodDescriptor, position);
+			types.add(typeName(methodDescriptor.substring(position, end)));
+			position = end;
+		}
+		return types;
+	}
+
+	/**
+	 * the Java name of the return type of a method descriptor
+	 * @param methodDescriptor
+	 * @return
+	 */
+	static String returnType(String methodDescriptor) {
+		return typeName(methodDescriptor.substring(methodDescriptor.indexOf(')') + 1));
+	}
+
+	/**
+	 * the Java name of a field descriptor
+	 * @param descriptor
+	 * @return
+	 */
+	static String typeName(String descriptor) {
+		switch (descriptor.charAt(0)) {
+		case 'B': return "byte";
+		case 'C': return "char";
+		case 'D': return "double";
+		case 'F': return "float";
+		case 'I': return "int";
+		case 'J': return "long";
+		case 'S': return "short";
+		case 'Z': return "boolean";
+		case 'V': return "void";
+		case '[': return typeName(descriptor.substring(1)) + "[]";
+		case 'L': return descriptor.substring(1, descriptor.indexOf(';')).replace('/', '.');
+		default: throw new IllegalArgumentException("Malformed descriptor: " + descriptor);
+		}
+	}
+
+	/**
+	 * the names of the formal type parameters of a generic class signature, e.g.
+	 * "K", "V" for "&lt;K:Ljava/lang/Object;V:Ljava/lang/Object;&gt;Ljava/lang/Object;"
+	 * @param classSignature
+	 * @return
+	 */
+	static List<String> typeParameters(String classSignature) {
+		List<String> names = new ArrayList<String>();
+		if (classSignature == null || classSignature.charAt(0) != '<')
+			return names;
+		int position = 1;
+		while (classSignature.charAt(position) != '>') {
+			int colon = classSignature.indexOf(':', position);
+			names.add(classSignature.substring(position, colon));
+			position = colon;
+			// the class bound, which may be empty, then the interface bounds
+			while (classSignature.charAt(position) == ':') {
+				position++;
+				if (classSignature.charAt(position) != ':' && classSignature.charAt(position) != '>'
+						&& !isTypeParameterStart(classSignature, position))
+					position = endOfSignature(classSignature, position);
+			}
+		}
+		return names;
+	}
+
+	private static boolean isTypeParameterStart(String signature, int position) {
+		// a bound starts with L, T or [; an identifier followed by ':' starts the next
+		// type parameter
+		char c = signature.charAt(position);
+		return c != 'L' && c != 'T' && c != '[';
+	}
+
+	/**
+	 * the end of the field type signature starting at position, generic arguments
+	 * included
+	 */
+	private static int endOfSignature(String signature, int position) {
+		char c = signature.charAt(position);
+		if (c == '[')
+			return endOfSignature(signature, position + 1);
+		if (c == 'T')
+			return signature.indexOf(';', position) + 1;
+		if (c != 'L')
+			return position + 1;
+		int depth = 0;
+		for (int i = position; i < signature.length(); i++) {
+			char d = signature.charAt(i);
+			if (d == '<')
+				depth++;
+			else if (d == '>')
+				depth--;
+			else if (d == ';' && depth == 0)
+				return i + 1;
+		}
+		return signature.length();
+	}
+
+	private static int endOfType(String descriptor, int position) {
+		char c = descriptor.charAt(position);
+		if (c == '[')
+			return endOfType(descriptor, position + 1);
+		if (c == 'L')
+			return descriptor.indexOf(';', position) + 1;
+		return position + 1;
+	}
+}
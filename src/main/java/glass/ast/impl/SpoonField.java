@@ -0,0 +1,116 @@
+package glass.ast.impl;
+
+import glass.ast.IField;
+import spoon.reflect.declaration.CtField;
+import spoon.reflect.reference.CtArrayTypeReference;
+import spoon.reflect.reference.CtTypeParameterReference;
+import spoon.reflect.reference.CtTypeReference;
+import spoon.reflect.reference.CtWildcardReference;
+
+/**
+ * A field of a <code>SpoonType</code>, as seen from one of the methods of the type
+ * that access it (its location).
+ *
+ * The type signature follows the conventions of JDT for source fields: class types
+ * are unresolved, e.g. "QString;" or "QList&lt;QString;&gt;;", and are resolved
+ * with <code>IType.resolveType(...)</code>.
+ */
+public class SpoonField implements IField {
+
+	private CtField<?> field;
+
+	private String location;
+
+	private String typeSignature;
+
+	private boolean classType;
+
+	/**
+	 * computes the type signature at once, as the fields are created by
+	 * <code>SpoonType</code> under the lock of the project
+	 * @param field
+	 * @param location
+	 */
+	public SpoonField(CtField<?> field, String location) {
+		this.field = field;
+		this.location = location;
+		CtTypeReference<?> type = field.getType();
+		this.typeSignature = signatureOf(type);
+		this.classType = type != null && !type.isPrimitive() && !(type instanceof CtArrayTypeReference)
+				&& !(type instanceof CtTypeParameterReference);
+	}
+
+	@Override
+	public boolean hasUnresolvedSignature() {
+		return this.getTypeSignature().charAt(0) == 'Q';
+	}
+
+	@Override
+	public String getTypeSignature() {
+		return this.typeSignature;
+	}
+
+	@Override
+	public String getElementName() {
+		return this.field.getSimpleName();
+	}
+
+	/**
+	 * true if the field has a class or interface type, rather than a primitive type,
+	 * an array type or a type variable
+	 */
+	@Override
+	public boolean isClassType() {
+		return this.classType;
+	}
+
+	@Override
+	public String getLocation() {
+		return this.location;
+	}
+
+	private static String signatureOf(CtTypeReference<?> type) {
+		if (type == null)
+			return "V";
+		if (type instanceof CtArrayTypeReference)
+			return "[" + signatureOf(((CtArrayTypeReference<?>) type).getComponentType());
+		if (type instanceof CtWildcardReference) {
+			CtWildcardReference wildcard = (CtWildcardReference) type;
+			if (wildcard.isDefaultBoundingType())
+				return "*";
+			return (wildcard.isUpper() ? "+" : "-") + signatureOf(wildcard.getBoundingType());
+		}
+		if (type.isPrimitive()) {
+			switch (type.getSimpleName()) {
+			case "int": return "I";
+			case "long": return "J";
+			case "boolean": return "Z";
+			case "byte": return "B";
+			case "char": return "C";
+			case "short": return "S";
+			case "float": return "F";
+			case "double": return "D";
+			default: return "V";
+			}
+		}
+		StringBuilder signature = new StringBuilder("Q");
+		signature.append(simpleName(type));
+		if (!type.getActualTypeArguments().isEmpty()) {
+			signature.append('<');
+			for (CtTypeReference<?> argument : type.getActualTypeArguments()) {
+				signature.append(signatureOf(argument));
+			}
+			signature.append('>');
+		}
+		return signature.append(';').toString();
+	}
+
+	/**
+	 * the name of type qualified by its enclosing types, e.g. Map.Entry
+	 */
+	private static String simpleName(CtTypeReference<?> type) {
+		if (type.getDeclaringType() == null || type instanceof CtTypeParameterReference)
+			return type.getSimpleName();
+		return simpleName(type.getDeclaringType()) + "." + type.getSimpleName();
+	}
+}
@@ -0,0 +1,226 @@
+package glass.ast.impl;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import glass.ast.IProject;
+import glass.ast.IType;
+import spoon.Launcher;
+import spoon.MavenLauncher;
+import spoon.reflect.CtModel;
+import spoon.reflect.declaration.CtClass;
+import spoon.reflect.declaration.CtInterface;
+import spoon.reflect.declaration.CtType;
+import spoon.reflect.factory.Factory;
+import spoon.reflect.reference.CtTypeParameterReference;
+import spoon.reflect.reference.CtTypeReference;
+import spoon.reflect.visitor.filter.TypeFilter;
+
+/**
+ * A project backed by a Spoon model.
+ *
+ * Each Spoon type is wrapped in a single <code>SpoonType</code>, so that the types
+ * can be compared by identity and used as keys by the relation builders. The
+ * queries that walk the model (the defined types, the hierarchy, the methods, the
+ * fields, the resolution of type names) are computed the first time they are made,
+ * and then cached until the hierarchy is changed through the <code>IType</code>
+ * methods (e.g. <code>addSuperInterface(...)</code>).
+ *
+ * The Spoon model is not thread-safe (e.g. it creates the types of the libraries
+ * on demand), so the queries are computed under the lock of the project. Once
+ * cached, they are read without locking, so the relation builders can query the
+ * types from several threads.
+ */
+public class SpoonProject implements IProject {
+
+	private CtModel model;
+
+	private Factory factory;
+
+	private Map<CtType<?>, SpoonType> types = new IdentityHashMap<CtType<?>, SpoonType>();
+
+	private volatile List<IType> definedTypes = null;
+
+	private Map<SpoonType, List<SpoonType>> directSubtypes = null;
+
+	private Map<String, IType> foundTypes = new HashMap<String, IType>();
+
+	public SpoonProject(CtModel model) {
+		this.model = model;
+		this.factory = model.getRootPackage().getFactory();
+	}
+
+	/**
+	 * builds the model of the sources of projectDirectory
+	 * @param projectDirectory
+	 * @param isMavenProject whether the classpath is taken from the pom of the project
+	 */
+	public SpoonProject(String projectDirectory, boolean isMavenProject) {
+		this(buildModel(projectDirectory, isMavenProject));
+	}
+
+	private static CtModel buildModel(String projectDirectory, boolean isMavenProject) {
+		Launcher launcher;
+		if (isMavenProject) {
+			launcher = new MavenLauncher(projectDirectory, MavenLauncher.SOURCE_TYPE.APP_SOURCE);
+		} else {
+			launcher = new Launcher();
+			launcher.getEnvironment().setNoClasspath(true);
+			launcher.addInputResource(projectDirectory);
+		}
+		return launcher.buildModel();
+	}
+
+	public CtModel getModel() {
+		return model;
+	}
+
+	Factory getFactory() {
+		return factory;
+	}
+
+	/**
+	 * the queries are computed under the lock of the project, and then cached. The
+	 * methods and fields of the types are wrapped under that lock too, with their
+	 * signatures and types already printed, so that they do not read the model
+	 */
+	@Override
+	public boolean isThreadSafe() {
+		return true;
+	}
+
+	/**
+	 * the classes, enums, records and interfaces of the model, except the anonymous
+	 * classes
+	 */
+	@Override
+	public Collection<IType> getDefinedTypes() {
+		List<IType> defined = definedTypes;
+		if (defined == null) {
+			synchronized (this) {
+				if (definedTypes == null) {
+					List<IType> modelTypes = new ArrayList<IType>();
+					for (CtType<?> type : allModelTypes()) {
+						if ((type instanceof CtClass || type instanceof CtInterface) && !type.isAnonymous())
+							modelTypes.add(typeFor(type));
+					}
+					definedTypes = Collections.unmodifiableList(modelTypes);
+				}
+				defined = definedTypes;
+			}
+		}
+		return defined;
+	}
+
+	@Override
+	public synchronized IType findType(String typeName) {
+		if (!foundTypes.containsKey(typeName))
+			foundTypes.put(typeName, typeFor(lookup(typeName)));
+		return foundTypes.get(typeName);
+	}
+
+	/**
+	 * returns the wrapper of type, creating it the first time
+	 * @param type
+	 * @return null if type is null
+	 */
+	synchronized SpoonType typeFor(CtType<?> type) {
+		if (type == null)
+			return null;
+		SpoonType wrapper = types.get(type);
+		if (wrapper == null) {
+			wrapper = new SpoonType(this, type);
+			types.put(type, wrapper);
+		}
+		return wrapper;
+	}
+
+	/**
+	 * returns the wrapper of the type referenced by reference, or null if it is a
+	 * type parameter, or if the type cannot be found (e.g. a library type that is not
+	 * in the classpath)
+	 * @param reference
+	 * @return
+	 */
+	synchronized SpoonType typeFor(CtTypeReference<?> reference) {
+		if (reference == null || reference instanceof CtTypeParameterReference)
+			return null;
+		try {
+			return typeFor(reference.getTypeDeclaration());
+		} catch (RuntimeException e) {
+			// Spoon throws when the class of a library type cannot be loaded
+			return null;
+		}
+	}
+
+	/**
+	 * finds the Spoon type named qualifiedName, in the model or in the classpath.
+	 * The nested types may be separated by '.' or by '$'
+	 * @param qualifiedName
+	 * @return null if there is no such type
+	 */
+	synchronized CtType<?> lookup(String qualifiedName) {
+		String name = qualifiedName;
+		while (true) {
+			CtType<?> type = factory.Type().get(name);
+			if (type == null) {
+				try {
+					type = factory.Type().createReference(name).getTypeDeclaration();
+				} catch (RuntimeException e) {
+					type = null;
+				}
+			}
+			if (type != null)
+				return type;
+			// try again, assuming the last segment is a nested type
+			int lastDot = name.lastIndexOf('.');
+			if (lastDot < 0)
+				return null;
+			name = name.substring(0, lastDot) + "$" + name.substring(lastDot + 1);
+		}
+	}
+
+	/**
+	 * the types of the project right below type, anonymous classes included
+	 * @param type
+	 * @return
+	 */
+	synchronized List<SpoonType> directSubtypesOf(SpoonType type) {
+		if (directSubtypes == null) {
+			directSubtypes = new HashMap<SpoonType, List<SpoonType>>();
+			for (CtType<?> modelType : allModelTypes()) {
+				if (!(modelType instanceof CtClass || modelType instanceof CtInterface))
+					continue;
+				SpoonType subtype = typeFor(modelType);
+				for (SpoonType supertype : subtype.directSupertypes()) {
+					directSubtypes.computeIfAbsent(supertype, key -> new ArrayList<SpoonType>()).add(subtype);
+				}
+			}
+		}
+		return directSubtypes.getOrDefault(type, Collections.emptyList());
+	}
+
+	/**
+	 * forgets the cached hierarchies and methods of the types, after the hierarchy
+	 * was changed
+	 */
+	synchronized void hierarchyChanged() {
+		directSubtypes = null;
+		for (SpoonType type : types.values()) {
+			type.reset();
+		}
+	}
+
+	private List<CtType<?>> allModelTypes() {
+		List<CtType<?>> modelTypes = new ArrayList<CtType<?>>();
+		for (CtType<?> type : model.getElements(new TypeFilter<CtType<?>>(CtType.class))) {
+			modelTypes.add(type);
+		}
+		return modelTypes;
+	}
+}
@@ -0,0 +1,340 @@
+package glass.ast.impl;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import glass.ast.IField;
+import glass.ast.IMethod;
+import glass.ast.IType;
+import glass.refactoring.impl.SpoonMethod;
+import spoon.reflect.code.CtFieldAccess;
+import spoon.reflect.declaration.CtClass;
+import spoon.reflect.declaration.CtCompilationUnit;
+import spoon.reflect.declaration.CtField;
+import spoon.reflect.declaration.CtImport;
+import spoon.reflect.declaration.CtImportKind;
+import spoon.reflect.declaration.CtMethod;
+import spoon.reflect.declaration.CtPackage;
+import spoon.reflect.declaration.CtType;
+import spoon.reflect.declaration.CtTypeParameter;
+import spoon.reflect.reference.CtFieldReference;
+import spoon.reflect.reference.CtReference;
+import spoon.reflect.reference.CtTypeReference;
+import spoon.reflect.visitor.filter.TypeFilter;
+
+/**
+ * A type of a <code>SpoonProject</code>, backed by a Spoon type.
+ *
+ * As for the hierarchy queries of <code>AbstractType</code>, the local methods, the
+ * fields and the resolved type names are computed once, under the lock of the
+ * project, and cached until the hierarchy is changed. The cached arrays are copied
+ * when returned.
+ */
+public class SpoonType extends AbstractType<SpoonType> {
+
+	private static final String JAVA_LANG_OBJECT = "java.lang.Object";
+
+	private SpoonProject project;
+
+	private CtType<?> type;
+
+	private volatile IMethod[] localMethods = null;
+
+	private CtMethod<?>[] localCtMethods = null;
+
+	private volatile IField[] fields = null;
+
+	private volatile List<SpoonType> directSupertypes = null;
+
+	private Map<String, String[][]> resolvedTypes = new HashMap<String, String[][]>();
+
+	SpoonType(SpoonProject project, CtType<?> type) {
+		super(project);
+		this.project = project;
+		this.type = type;
+	}
+
+	public CtType<?> getCtType() {
+		return this.type;
+	}
+
+	@Override
+	public boolean isAnonymous() {
+		return this.type.isAnonymous();
+	}
+
+	@Override
+	public boolean isInterface() {
+		return this.type.isInterface();
+	}
+
+	@Override
+	public IMethod[] getLocalMethods() {
+		IMethod[] local = this.localMethods;
+		if (local == null) {
+			synchronized (this.project) {
+				if (this.localMethods == null) {
+					this.localCtMethods = this.type.getMethods().toArray(new CtMethod<?>[0]);
+					IMethod[] wrappers = new IMethod[this.localCtMethods.length];
+					for (int i = 0; i < wrappers.length; i++) {
+						// the wrappers print the model, which is done here, under the lock
+						wrappers[i] = new SpoonMethod(this.localCtMethods[i]).precompute();
+					}
+					this.localMethods = wrappers;
+				}
+				local = this.localMethods;
+			}
+		}
+		return local.clone();
+	}
+
+	@Override
+	IMethod[] localMethods() {
+		this.getLocalMethods();
+		return this.localMethods;
+	}
+
+	@Override
+	boolean isInheritable(int index) {
+		CtMethod<?> method = this.localCtMethods[index];
+		return !method.isPrivate() && !(this.isInterface() && method.isStatic());
+	}
+
+	@Override
+	public String getPackage() {
+		CtPackage typePackage = this.type.getPackage();
+		if (typePackage == null || typePackage.isUnnamedPackage())
+			return "";
+		return typePackage.getQualifiedName();
+	}
+
+	/**
+	 * returns the fields declared by the type, once per local method that accesses
+	 * them (the location of the field), or once with no location if no method
+	 * accesses them
+	 */
+	@Override
+	public IField[] getFields() {
+		IField[] typeFields = this.fields;
+		if (typeFields == null) {
+			synchronized (this.project) {
+				if (this.fields == null) {
+					List<IField> wrappers = new ArrayList<IField>();
+					for (CtField<?> field : this.type.getFields()) {
+						Set<String> locations = new LinkedHashSet<String>();
+						for (CtMethod<?> method : this.type.getMethods()) {
+							if (this.accesses(method, field))
+								locations.add(method.getSimpleName());
+						}
+						if (locations.isEmpty())
+							wrappers.add(new SpoonField(field, null));
+						for (String location : locations) {
+							wrappers.add(new SpoonField(field, location));
+						}
+					}
+					this.fields = wrappers.toArray(new IField[wrappers.size()]);
+				}
+				typeFields = this.fields;
+			}
+		}
+		return typeFields.clone();
+	}
+
+	private boolean accesses(CtMethod<?> method, CtField<?> field) {
+		for (CtFieldAccess<?> access : method.getElements(new TypeFilter<CtFieldAccess<?>>(CtFieldAccess.class))) {
+			CtFieldReference<?> reference = access.getVariable();
+			if (reference != null && field.getSimpleName().equals(reference.getSimpleName())
+					&& reference.getDeclaringType() != null
+					&& this.type.getQualifiedName().equals(reference.getDeclaringType().getQualifiedName()))
+				return true;
+		}
+		return false;
+	}
+
+	@Override
+	public String getElementName() {
+		return this.type.getSimpleName();
+	}
+
+	@Override
+	public String getFullyQualifiedName() {
+		return this.type.getQualifiedName();
+	}
+
+	@Override
+	public String getFullyQualifiedParameterizedName() {
+		String name = this.type.getQualifiedName().replace('$', '.');
+		List<CtTypeParameter> parameters = this.type.getFormalCtTypeParameters();
+		if (parameters.isEmpty())
+			return name;
+		return name + parameters.stream().map(CtTypeParameter::getSimpleName).collect(Collectors.joining(", ", "<", ">"));
+	}
+
+	/**
+	 * resolves typeName by looking, in this order, for a member type of the type,
+	 * of its enclosing types or of their supertypes, a type imported by name, a type
+	 * of the same package, a type imported on demand, a type of java.lang, and
+	 * finally a type whose fully qualified name is typeName. Returns the first match
+	 */
+	@Override
+	public String[][] resolveType(String typeName) {
+		synchronized (this.project) {
+			if (!this.resolvedTypes.containsKey(typeName))
+				this.resolvedTypes.put(typeName, this.resolve(typeName));
+			String[][] resolved = this.resolvedTypes.get(typeName);
+			return resolved == null ? null : new String[][] { resolved[0].clone() };
+		}
+	}
+
+	private String[][] resolve(String typeName) {
+		// the type arguments, if any, do not take part in the resolution
+		String name = typeName.trim();
+		if (name.indexOf('<') >= 0)
+			name = name.substring(0, name.indexOf('<'));
+		int firstDot = name.indexOf('.');
+		String firstSegment = firstDot < 0 ? name : name.substring(0, firstDot);
+		String rest = firstDot < 0 ? "" : name.substring(firstDot);
+
+		// 1. the member types
+		for (CtType<?> enclosing = this.type; enclosing != null; enclosing = enclosing.getDeclaringType()) {
+			SpoonType wrapper = this.project.typeFor(enclosing);
+			List<IType> scope = new ArrayList<IType>();
+			scope.add(wrapper);
+			for (IType supertype : wrapper.getAllSupertypes()) {
+				scope.add(supertype);
+			}
+			for (IType candidate : scope) {
+				CtType<?> member = ((SpoonType) candidate).type.getNestedType(firstSegment);
+				if (member != null)
+					return this.resolvedName(member.getQualifiedName() + rest);
+			}
+		}
+
+		// 2. the imports and the package
+		List<String> candidates = new ArrayList<String>();
+		List<String> onDemandPackages = new ArrayList<String>();
+		CtCompilationUnit unit = this.type.getPosition().isValidPosition()
+				? this.type.getPosition().getCompilationUnit()
+				: null;
+		if (unit != null) {
+			for (CtImport anImport : unit.getImports()) {
+				CtReference reference = anImport.getReference();
+				if (reference == null)
+					continue;
+				if (anImport.getImportKind() == CtImportKind.TYPE && firstSegment.equals(reference.getSimpleName()))
+					candidates.add(((CtTypeReference<?>) reference).getQualifiedName());
+				else if (anImport.getImportKind() == CtImportKind.ALL_TYPES)
+					onDemandPackages.add(reference.toString());
+			}
+		}
+		String typePackage = this.getPackage();
+		candidates.add(typePackage.isEmpty() ? firstSegment : typePackage + "." + firstSegment);
+		for (String onDemandPackage : onDemandPackages) {
+			candidates.add(onDemandPackage + "." + firstSegment);
+		}
+		candidates.add("java.lang." + firstSegment);
+		for (String candidate : candidates) {
+			CtType<?> found = this.project.lookup(candidate + rest);
+			if (found != null)
+				return this.resolvedName(found.getQualifiedName());
+		}
+
+		// 3. a fully qualified name
+		CtType<?> found = this.project.lookup(name);
+		return found == null ? null : this.resolvedName(found.getQualifiedName());
+	}
+
+	/**
+	 * splits a qualified name into the package and the type-qualified name, with
+	 * '.' as enclosing type separator
+	 */
+	private String[][] resolvedName(String qualifiedName) {
+		CtType<?> resolved = this.project.lookup(qualifiedName);
+		if (resolved == null)
+			return null;
+		SpoonType wrapper = this.project.typeFor(resolved);
+		String resolvedPackage = wrapper.getPackage();
+		String name = resolved.getQualifiedName();
+		if (!resolvedPackage.isEmpty())
+			name = name.substring(resolvedPackage.length() + 1);
+		return new String[][] { { resolvedPackage, name.replace('$', '.') } };
+	}
+
+	/**
+	 * the types right above this one: its superclass (java.lang.Object if it has none
+	 * and is a class) and its superinterfaces, when they can be found
+	 * @return
+	 */
+	@Override
+	List<SpoonType> directSupertypes() {
+		List<SpoonType> supertypes = this.directSupertypes;
+		if (supertypes == null) {
+			synchronized (this.project) {
+				if (this.directSupertypes == null) {
+					List<SpoonType> direct = new ArrayList<SpoonType>();
+					CtTypeReference<?> superclass = this.type.getSuperclass();
+					if (superclass != null)
+						this.addIfFound(direct, this.project.typeFor(superclass));
+					else if (this.type instanceof CtClass && !JAVA_LANG_OBJECT.equals(this.type.getQualifiedName()))
+						this.addIfFound(direct, (SpoonType) this.project.findType(JAVA_LANG_OBJECT));
+					for (CtTypeReference<?> superInterface : this.type.getSuperInterfaces()) {
+						this.addIfFound(direct, this.project.typeFor(superInterface));
+					}
+					this.directSupertypes = direct;
+				}
+				supertypes = this.directSupertypes;
+			}
+		}
+		return supertypes;
+	}
+
+	@Override
+	List<SpoonType> directSubtypes() {
+		return this.project.directSubtypesOf(this);
+	}
+
+	private void addIfFound(List<SpoonType> supertypes, SpoonType supertype) {
+		if (supertype != null && supertype != this && !supertypes.contains(supertype))
+			supertypes.add(supertype);
+	}
+
+	@Override
+	public void addSuperInterface(IType superInterface) {
+		synchronized (this.project) {
+			this.type.addSuperInterface(this.project.getFactory().Type().createReference(superInterface.getFullyQualifiedName()));
+			this.project.hierarchyChanged();
+		}
+	}
+
+	@Override
+	public void changeSuperclass(IType newSuperclass) {
+		if (!(this.type instanceof CtClass))
+			return; // an interface has no superclass
+		synchronized (this.project) {
+			this.type.setSuperclass(this.project.getFactory().Type().createReference(newSuperclass.getFullyQualifiedName()));
+			this.project.hierarchyChanged();
+		}
+	}
+
+	@Override
+	public void addSubType(IType subType) {
+		if (this.isInterface())
+			subType.addSuperInterface(this);
+		else
+			subType.changeSuperclass(this);
+	}
+
+	/**
+	 * forgets what depends on the hierarchy. Called by the project, under its lock
+	 */
+	void reset() {
+		this.resetHierarchy();
+		this.directSupertypes = null;
+		this.resolvedTypes.clear();
+	}
+}
@@ -0,0 +1,213 @@
+package glass.lattice.builder;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import glass.lattice.model.ILattice;
+import glass.lattice.model.ILatticeNode;
+import glass.lattice.model.IRelation;
+import glass.lattice.model.impl.ClosureOperator;
+import glass.lattice.model.impl.Lattice;
+import glass.lattice.model.impl.LatticeNode;
+
+/**
+ * Base class of the builders that build the lattice of a relation in one go, instead
+ * of inserting the elements of the domain one by one: subclasses enumerate the
+ * concepts of the encoded relation, and this class computes the cover relation (the
+ * parent/child links) and creates the lattice nodes.
+ *
+ * The resulting lattice is the one <code>LatticeBuilder</code> builds: its top has the
+ * whole domain as extent and an empty intent (when all the elements of the domain share
+ * some attributes, the concept of those attributes is the only child of the top), and
+ * its bottom has all the images of the relation as intent.
+ *
+ * With a minimum support, subclasses only return the concepts whose extent is large
+ * enough, and the covers are computed among those concepts, the bottom being the only
+ * child of the concepts that have no frequent children.
+ *
+ * The derivations are computed by a <code>ClosureOperator</code> shared by the two
+ * phases: the candidate extents of the cover computation are extents of concepts,
+ * whose intents were cached while the concepts were enumerated.
+ *
+ * The incremental operations are inherited from <code>LatticeBuilder</code>, so that a
+ * lattice built in batch can still be updated afterwards.
+ */
+public abstract class AbstractBatchLatticeBuilder extends LatticeBuilder {
+
+	/**
+	 * a concept of an encoded context
+	 */
+	static class EncodedConcept {
+		final BitSet extent;
+		final BitSet intent;
+
+		EncodedConcept(BitSet extent, BitSet intent) {
+			this.extent = extent;
+			this.intent = intent;
+		}
+	}
+
+	@Override
+	public ILattice buildLattice(IRelation aRelation) {
+		aRelation = snapshot(aRelation);
+		ClosureOperator context = new ClosureOperator(aRelation);
+
+		// degenerate relations (empty domain, or no images at all) have a two node
+		// lattice: leave them to the incremental algorithm
+		if (context.objectCount() == 0 || context.attributeCount() == 0)
+			return super.buildLattice(aRelation);
+
+		return assemble(context, enumerateConcepts(context));
+	}
+
+	/**
+	 * returns all the concepts of the context whose extent has at least
+	 * <code>minimumSupport</code> elements, including the top concept (the one
+	 * whose extent is the full domain) if it qualifies. The bottom concept (the one
+	 * whose intent is the set of all attributes) may be left out
+	 * @param context
+	 * @return
+	 */
+	abstract Collection<EncodedConcept> enumerateConcepts(ClosureOperator context);
+
+	/**
+	 * computes the cover relation between concepts and turns them into a lattice
+	 * @param context
+	 * @param concepts
+	 * @return
+	 */
+	ILattice assemble(ClosureOperator context, Collection<EncodedConcept> concepts) {
+		HashMap<BitSet, EncodedConcept> conceptsByIntent = new HashMap<BitSet, EncodedConcept>();
+		for (EncodedConcept concept : concepts) {
+			conceptsByIntent.put(concept.intent, concept);
+		}
+
+		// 1. the top of the lattice has an empty intent. If it is not a concept
+		// (the whole domain shares some attributes), add it on top of the top concept
+		BitSet emptyIntent = new BitSet();
+		EncodedConcept top = conceptsByIntent.get(emptyIntent);
+		if (top == null) {
+			top = new EncodedConcept(context.allObjects(), emptyIntent);
+			conceptsByIntent.put(emptyIntent, top);
+		}
+		BitSet allAttributes = context.allAttributes();
+		EncodedConcept bottom = conceptsByIntent.get(allAttributes);
+		if (bottom == null) {
+			bottom = new EncodedConcept(context.extentOf(allAttributes), allAttributes);
+			conceptsByIntent.put(allAttributes, bottom);
+		}
+
+		// 2. the cover relation
+		List<EncodedConcept> allConcepts = new ArrayList<EncodedConcept>(conceptsByIntent.values());
+		List<List<EncodedConcept>> lowerCovers = computeLowerCovers(context, allConcepts, conceptsByIntent);
+
+		// 3. the lattice nodes
+		ILattice lattice = new Lattice();
+		HashMap<EncodedConcept, ILatticeNode> nodes = new HashMap<EncodedConcept, ILatticeNode>();
+		for (EncodedConcept concept : allConcepts) {
+			ILatticeNode node = new LatticeNode();
+			node.setExtent(context.getObjects().decode(concept.extent));
+			node.setIntent(context.getAttributes().decode(concept.intent));
+			nodes.put(concept, node);
+		}
+		for (int i = 0; i < allConcepts.size(); i++) {
+			ILatticeNode node = nodes.get(allConcepts.get(i));
+			List<EncodedConcept> children = lowerCovers.get(i);
+			// the concepts whose children were all pruned are linked to the bottom
+			if (children.isEmpty() && allConcepts.get(i) != bottom)
+				children = Collections.singletonList(bottom);
+			for (EncodedConcept child : children) {
+				ILatticeNode childNode = nodes.get(child);
+				node.addChild(childNode);
+				childNode.addParent(node);
+			}
+		}
+		lattice.setTop(nodes.get(top));
+		lattice.setBottom(nodes.get(bottom));
+		for (ILatticeNode node : nodes.values()) {
+			lattice.getIntentBuckets().add(node);
+		}
+		return lattice;
+	}
+
+	/**
+	 * returns the lower covers (children) of each concept of concepts, in the same
+	 * order. Subclasses may override to spread the work
+	 * @param context
+	 * @param concepts
+	 * @param conceptsByIntent
+	 * @return
+	 */
+	List<List<EncodedConcept>> computeLowerCovers(ClosureOperator context, List<EncodedConcept> concepts,
+			HashMap<BitSet, EncodedConcept> conceptsByIntent) {
+		List<List<EncodedConcept>> lowerCovers = new ArrayList<List<EncodedConcept>>(concepts.size());
+		for (EncodedConcept concept : concepts) {
+			lowerCovers.add(lowerCovers(context, concept, conceptsByIntent, minimumSupport));
+		}
+		return lowerCovers;
+	}
+
+	/**
+	 * computes the lower covers of a concept using Lindig's neighbour test: the
+	 * candidates are the closures of intent + {m}, for each attribute m outside the
+	 * intent, and a candidate is a cover if none of the attributes that it adds (other
+	 * than m) was already found to lead to a smaller closure.
+	 * 
+	 * Only the candidates that meet minimumSupport are considered, which gives the
+	 * covers among the frequent concepts: the attributes that a frequent candidate
+	 * adds are necessarily frequent as well
+	 * @param context
+	 * @param concept
+	 * @param conceptsByIntent
+	 * @param minimumSupport
+	 * @return
+	 */
+	static List<EncodedConcept> lowerCovers(ClosureOperator context, EncodedConcept concept,
+			HashMap<BitSet, EncodedConcept> conceptsByIntent, int minimumSupport) {
+		// the top of the lattice may not be closed, in which case its only child is
+		// its closure, if it is frequent
+		BitSet closure = context.intentOf(concept.extent);
+		if (!closure.equals(concept.intent)) {
+			EncodedConcept closed = conceptsByIntent.get(closure);
+			return closed == null ? Collections.<EncodedConcept>emptyList() : Collections.singletonList(closed);
+		}
+
+		// the candidates, as extents, and the attributes leading to frequent ones
+		BitSet[] candidateExtents = new BitSet[context.attributeCount()];
+		BitSet minimal = new BitSet(context.attributeCount());
+		for (int attributeId = 0; attributeId < context.attributeCount(); attributeId++) {
+			if (concept.intent.get(attributeId))
+				continue;
+			BitSet extent = (BitSet) concept.extent.clone();
+			extent.and(context.column(attributeId));
+			if (extent.cardinality() >= minimumSupport) {
+				candidateExtents[attributeId] = extent;
+				minimal.set(attributeId);
+			}
+		}
+
+		List<EncodedConcept> covers = new ArrayList<EncodedConcept>();
+		Set<BitSet> coverIntents = new HashSet<BitSet>();
+		for (int attributeId = minimal.nextSetBit(0); attributeId >= 0; attributeId = minimal
+				.nextSetBit(attributeId + 1)) {
+			BitSet intent = context.intentOf(candidateExtents[attributeId]);
+
+			// the attributes added by the closure, besides attributeId
+			BitSet added = (BitSet) intent.clone();
+			added.andNot(concept.intent);
+			added.clear(attributeId);
+			if (added.intersects(minimal)) {
+				minimal.clear(attributeId);
+			} else if (coverIntents.add(intent)) {
+				covers.add(conceptsByIntent.get(intent));
+			}
+		}
+		return covers;
+	}
+}
@@ -0,0 +1,131 @@
+package glass.lattice.builder;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Set;
+
+import glass.lattice.model.ILattice;
+import glass.lattice.model.ILatticeNode;
+import glass.lattice.model.impl.LatticeNode;
+
+/**
+ * A LatticeBuilder that inserts the elements of the relation with the AddIntent
+ * algorithm (van der Merwe, Obiedkov and Kourie, "AddIntent: a new incremental
+ * algorithm for constructing concept lattices", ICFCA 2004), instead of Godin et
+ * al.'s.
+ *
+ * Rather than testing every node of the smaller buckets as a potential parent of
+ * each new node, AddIntent starts from the bottom and only walks up the parents of
+ * the (canonical) generator of the intent to add: the parents of a new node are
+ * found among the concepts generated, recursively, from the parents of its
+ * generator. The parts of the lattice above unrelated concepts are never visited.
+ *
+ * It builds the same lattice as <code>LatticeBuilder</code>, and can be used in its
+ * place.
+ */
+public class AddIntentLatticeBuilder extends LatticeBuilder {
+
+	@Override
+	public void add(ILattice lattice, Object entity, Set<Object> image) {
+		// 1. the bottom must hold all the attributes. If the image brings new ones,
+		// extend it, or put a new bottom under it if it already has objects
+		extendBottom(lattice, image);
+
+		// 2. find, or create, the concept whose intent is the image
+		ILatticeNode objectConcept = addIntent(lattice, image, lattice.getBottom());
+
+		// 3. entity belongs to the extent of that concept, and of all the concepts
+		// above it
+		Set<ILatticeNode> visited = new HashSet<ILatticeNode>();
+		LinkedList<ILatticeNode> toVisit = new LinkedList<ILatticeNode>();
+		toVisit.add(objectConcept);
+		while (!toVisit.isEmpty()) {
+			ILatticeNode node = toVisit.removeFirst();
+			if (visited.add(node)) {
+				node.addToExtent(entity);
+				toVisit.addAll(node.getParents());
+			}
+		}
+		shareEntityBetweenTopAndBottom(lattice, entity);
+	}
+
+	/**
+	 * returns the node whose intent is intent, creating it (and, recursively, the
+	 * nodes it needs as parents) if there is none
+	 * @param lattice
+	 * @param intent
+	 * @param generator a node whose intent contains intent
+	 * @return
+	 */
+	private ILatticeNode addIntent(ILattice lattice, Set<Object> intent, ILatticeNode generator) {
+		// 1. the canonical generator: the largest concept whose intent contains intent
+		generator = getMaximalConcept(intent, generator);
+		if (generator.getIntent().size() == intent.size())
+			return generator;
+
+		// 2. the parents of the new node: the concepts generated by the parents of
+		// the generator, keeping the smallest ones only
+		List<ILatticeNode> newParents = new ArrayList<ILatticeNode>();
+		for (ILatticeNode candidate : new ArrayList<ILatticeNode>(generator.getParents())) {
+			if (!intent.containsAll(candidate.getIntent())) {
+				Set<Object> candidateIntent = new HashSet<Object>(candidate.getIntent());
+				candidateIntent.retainAll(intent);
+				candidate = addIntent(lattice, candidateIntent, candidate);
+			}
+
+			boolean addParent = true;
+			for (int i = newParents.size() - 1; i >= 0; i--) {
+				ILatticeNode parent = newParents.get(i);
+				if (parent.getIntent().containsAll(candidate.getIntent())) {
+					addParent = false;
+					break;
+				} else if (candidate.getIntent().containsAll(parent.getIntent())) {
+					newParents.remove(i);
+				}
+			}
+			if (addParent)
+				newParents.add(candidate);
+		}
+
+		// 3. the new node takes the extent of its generator, and goes between the
+		// generator and the new parents
+		ILatticeNode newNode = new LatticeNode();
+		newNode.addCollectionToExtent(generator.getExtent());
+		newNode.addCollectionToIntent(intent);
+		lattice.getIntentBuckets().add(newNode);
+		for (ILatticeNode parent : newParents) {
+			if (generator.hasParent(parent)) {
+				generator.removeParent(parent);
+				parent.removeChild(generator);
+			}
+			parent.addChild(newNode);
+			newNode.addParent(parent);
+		}
+		newNode.addChild(generator);
+		generator.addParent(newNode);
+		return newNode;
+	}
+
+	/**
+	 * climbs from node to the largest concept whose intent still contains intent
+	 * @param intent
+	 * @param node
+	 * @return
+	 */
+	private static ILatticeNode getMaximalConcept(Set<Object> intent, ILatticeNode node) {
+		boolean parentIsMaximal = true;
+		while (parentIsMaximal) {
+			parentIsMaximal = false;
+			for (ILatticeNode parent : node.getParents()) {
+				if (parent.getIntent().containsAll(intent)) {
+					node = parent;
+					parentIsMaximal = true;
+					break;
+				}
+			}
+		}
+		return node;
+	}
+}
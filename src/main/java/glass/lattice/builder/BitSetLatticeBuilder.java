@@ -0,0 +1,333 @@
+package glass.lattice.builder;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Set;
+
+import glass.lattice.model.ILattice;
+import glass.lattice.model.ILatticeNode;
+import glass.lattice.model.IRelation;
+import glass.lattice.model.impl.ElementIndex;
+import glass.lattice.model.impl.Lattice;
+import glass.lattice.model.impl.LatticeNode;
+
+/**
+ * A mode of LatticeBuilder that runs the same algorithm (Godin et al.'s incremental
+ * algorithm) on integer-encoded concepts. Every domain object and every attribute is
+ * interned to a dense int id, and the intents and extents are stored as bit vectors
+ * while the lattice is under construction. Inclusion tests and intersections thus
+ * become word operations instead of hashing boxed <code>IMethod</code>s.
+ *
+ * The <code>ILatticeNode</code>s, with their <code>Set&lt;Object&gt;</code> intents
+ * and extents, are only (re)built when the lattice is handed back to the caller, i.e.
+ * at the end of <code>buildLattice</code>, or at the end of each <code>add</code>
+ * for the nodes that the insertion touched.
+ *
+ * Instances keep the encoding of the last lattice they worked on, and are thus not
+ * meant to be shared between threads.
+ */
+public class BitSetLatticeBuilder extends LatticeBuilder {
+
+	/**
+	 * a concept under construction. <code>view</code> is the lattice node that
+	 * represents it in the <code>ILattice</code>, if any
+	 */
+	private static class EncodedNode {
+		BitSet extent;
+		BitSet intent;
+		int intentSize;
+		Set<EncodedNode> parents = new HashSet<EncodedNode>();
+		Set<EncodedNode> children = new HashSet<EncodedNode>();
+		ILatticeNode view;
+		boolean dirty;
+
+		EncodedNode(BitSet extent, BitSet intent) {
+			this.extent = extent;
+			this.intent = intent;
+			this.intentSize = intent.cardinality();
+		}
+	}
+
+	/**
+	 * the encoded counterpart of an <code>ILattice</code>
+	 */
+	private static class EncodedLattice {
+		ILattice lattice;
+		ElementIndex objects = new ElementIndex();
+		ElementIndex attributes = new ElementIndex();
+		List<EncodedNode> nodes = new ArrayList<EncodedNode>();
+		/**
+		 * C[i]: buckets.get(i) holds the nodes whose intent has i attributes
+		 */
+		List<List<EncodedNode>> buckets = new ArrayList<List<EncodedNode>>();
+
+		void register(EncodedNode node) {
+			nodes.add(node);
+			bucketForSize(buckets, node.intentSize).add(node);
+		}
+	}
+
+	private EncodedLattice current = null;
+
+	@Override
+	public ILattice buildLattice(IRelation aRelation) {
+		aRelation = snapshot(aRelation);
+		ILattice lattice = new Lattice();
+
+		// first, initialize top and bottom, and encode them
+		initializeTopBottom(lattice, aRelation);
+		EncodedLattice encoded = encode(lattice);
+
+		// next, insert the elements of the relation one by one, without touching
+		// the lattice nodes
+		for (Object domainElement : aRelation.getDomain()) {
+			add(encoded, domainElement, aRelation.getImage(domainElement));
+		}
+
+		// finally, hand the lattice back with its nodes up to date
+		materialize(encoded);
+		current = encoded;
+
+		// the encoding does not follow the pruning, so it is dropped
+		if (minimumSupport > 0) {
+			pruneInfrequentConcepts(lattice);
+			current = null;
+		}
+		return lattice;
+	}
+
+	@Override
+	public void add(ILattice lattice, Object entity, Set<Object> image) {
+		if (current == null || current.lattice != lattice) {
+			current = encode(lattice);
+		}
+		add(current, entity, image);
+		materialize(current);
+		// the encoding does not follow a change made on the nodes
+		if (shareEntityBetweenTopAndBottom(lattice, entity))
+			current = null;
+	}
+
+	@Override
+	public void remove(ILattice lattice, Object entity) {
+		// the removal works on the lattice nodes, so the encoding is out of date
+		super.remove(lattice, entity);
+		current = null;
+	}
+
+	@Override
+	public void addAttribute(ILattice lattice, Object attribute, Set<Object> objects) {
+		super.addAttribute(lattice, attribute, objects);
+		current = null;
+	}
+
+	@Override
+	public void removeAttribute(ILattice lattice, Object attribute) {
+		super.removeAttribute(lattice, attribute);
+		current = null;
+	}
+
+	/**
+	 * lines 12 to 43 of Algorithm 1, on encoded nodes. See
+	 * <code>LatticeBuilder.add(...)</code> for the step by step comments
+	 * @param encoded
+	 * @param entity
+	 * @param image
+	 */
+	private void add(EncodedLattice encoded, Object entity, Set<Object> image) {
+		int entityId = encoded.objects.intern(entity);
+		BitSet encodedImage = encoded.attributes.encode(image);
+		int imageSize = encodedImage.cardinality();
+
+		// 13 C'[i] <- 0
+		List<List<EncodedNode>> newBuckets = new ArrayList<List<EncodedNode>>();
+
+		// 15 FOR i:0 TO maximum cardinality DO. Nodes created along the way have a
+		// smaller intent than the node they are generated from, so they never land
+		// in a bucket that is still to be visited
+		int maximumCardinality = encoded.buckets.size();
+		for (int i = 0; i < maximumCardinality; i++) {
+			List<EncodedNode> bucket = encoded.buckets.get(i);
+			// 16 FOR each pair H in C[i]
+			for (int k = 0; k < bucket.size(); k++) {
+				EncodedNode node = bucket.get(k);
+
+				// 17 IF X'(H) <= f({x*}} THEN {modified pair}
+				if (ElementIndex.isSubset(node.intent, encodedImage)) {
+					// 18 Add x* to X(H)
+					node.extent.set(entityId);
+					node.dirty = true;
+					// 19 Add H to C'[i]
+					bucketForSize(newBuckets, node.intentSize).add(node);
+					// 20 IF X'(H) = f({x*}) THEN exit algorithm
+					if (imageSize == node.intentSize)
+						return;
+				} else {
+					// 22 int <- X'(H) INTER f({x*})
+					BitSet intersection = (BitSet) encodedImage.clone();
+					intersection.and(node.intent);
+					int intersectionSize = intersection.cardinality();
+
+					// 23 IF NOT EXIST H1 e C'[||int||] such that X'(H1) = Int
+					boolean nodeIsGenerator = true;
+					if (intersectionSize < newBuckets.size()) {
+						for (EncodedNode newNode : newBuckets.get(intersectionSize)) {
+							if (newNode.intent.equals(intersection)) {
+								nodeIsGenerator = false;
+								break;
+							}
+						}
+					}
+
+					if (nodeIsGenerator) {
+						// 24 Create new pair Hn = (X(H) UNION {x*}, int) and
+						// add to C'[||int||]
+						BitSet extent = (BitSet) node.extent.clone();
+						extent.set(entityId);
+						EncodedNode newNode = new EncodedNode(extent, intersection);
+						encoded.register(newNode);
+						bucketForSize(newBuckets, intersectionSize).add(newNode);
+
+						// 25 Add edge Hn -> H
+						link(newNode, node);
+
+						// 27 FOR j:0 TO ||int|| -1
+						for (int j = 0; j < intersectionSize && j < newBuckets.size(); j++) {
+							// 28 FOR each Ha e C'[j]
+							for (EncodedNode potentialParent : newBuckets.get(j)) {
+								// 29 IF X'(Ha) <= int
+								if (ElementIndex.isSubset(potentialParent.intent, intersection)) {
+									// 30-33 Ha is a parent unless one of its children
+									// also qualifies
+									boolean isParent = true;
+									for (EncodedNode childOfPotentialParent : potentialParent.children) {
+										if (ElementIndex.isSubset(childOfPotentialParent.intent, intersection)) {
+											isParent = false;
+											break;
+										}
+									}
+									// 34 IF parent
+									if (isParent) {
+										// 35-36 IF Ha is a parent of H eliminate edge Ha -> H
+										if (node.parents.contains(potentialParent)) {
+											unlink(potentialParent, node);
+										}
+										// 37 Add edge Ha -> Hn
+										link(potentialParent, newNode);
+									}
+								}
+							}
+						}
+
+						// 42 IF Int=f*({x*}) THEN exit algorithm END IF
+						if (intersectionSize == imageSize)
+							return;
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * builds the encoded counterpart of a lattice, walking it down from the top
+	 * @param lattice
+	 * @return
+	 */
+	private EncodedLattice encode(ILattice lattice) {
+		EncodedLattice encoded = new EncodedLattice();
+		encoded.lattice = lattice;
+
+		HashMap<ILatticeNode, EncodedNode> encodedNodes = new HashMap<ILatticeNode, EncodedNode>();
+		LinkedList<ILatticeNode> toVisit = new LinkedList<ILatticeNode>();
+		toVisit.add(lattice.getTop());
+		while (!toVisit.isEmpty()) {
+			ILatticeNode node = toVisit.removeFirst();
+			if (encodedNodes.containsKey(node))
+				continue;
+			EncodedNode encodedNode = new EncodedNode(encoded.objects.encode(node.getExtent()),
+					encoded.attributes.encode(node.getIntent()));
+			encodedNode.view = node;
+			encodedNodes.put(node, encodedNode);
+			encoded.register(encodedNode);
+			toVisit.addAll(node.getChildren());
+		}
+
+		// now that every node is encoded, the edges
+		for (ILatticeNode node : encodedNodes.keySet()) {
+			EncodedNode encodedNode = encodedNodes.get(node);
+			for (ILatticeNode child : node.getChildren()) {
+				EncodedNode encodedChild = encodedNodes.get(child);
+				encodedNode.children.add(encodedChild);
+				encodedChild.parents.add(encodedNode);
+			}
+		}
+		return encoded;
+	}
+
+	/**
+	 * brings the lattice nodes in line with their encoded counterparts: creates the
+	 * nodes of the new concepts, and refreshes the extent, intent and edges of the
+	 * nodes that were modified. The new nodes are also filed in the intent size
+	 * index of the lattice
+	 * @param encoded
+	 */
+	private void materialize(EncodedLattice encoded) {
+		List<ILatticeNode> createdNodes = new ArrayList<ILatticeNode>();
+		for (EncodedNode node : encoded.nodes) {
+			if (node.view == null) {
+				node.view = new LatticeNode();
+				node.dirty = true;
+				createdNodes.add(node.view);
+			}
+		}
+		for (EncodedNode node : encoded.nodes) {
+			if (!node.dirty)
+				continue;
+			ILatticeNode view = node.view;
+			view.setExtent(encoded.objects.decode(node.extent));
+			view.setIntent(encoded.attributes.decode(node.intent));
+
+			for (ILatticeNode parent : new ArrayList<ILatticeNode>(view.getParents())) {
+				view.removeParent(parent);
+			}
+			for (EncodedNode parent : node.parents) {
+				view.addParent(parent.view);
+			}
+			for (ILatticeNode child : new ArrayList<ILatticeNode>(view.getChildren())) {
+				view.removeChild(child);
+			}
+			for (EncodedNode child : node.children) {
+				view.addChild(child.view);
+			}
+			node.dirty = false;
+		}
+		for (ILatticeNode createdNode : createdNodes) {
+			encoded.lattice.getIntentBuckets().add(createdNode);
+		}
+	}
+
+	private static void link(EncodedNode parent, EncodedNode child) {
+		parent.children.add(child);
+		child.parents.add(parent);
+		parent.dirty = true;
+		child.dirty = true;
+	}
+
+	private static void unlink(EncodedNode parent, EncodedNode child) {
+		parent.children.remove(child);
+		child.parents.remove(parent);
+		parent.dirty = true;
+		child.dirty = true;
+	}
+
+	private static List<EncodedNode> bucketForSize(List<List<EncodedNode>> buckets, int size) {
+		while (buckets.size() <= size) {
+			buckets.add(new ArrayList<EncodedNode>());
+		}
+		return buckets.get(size);
+	}
+}
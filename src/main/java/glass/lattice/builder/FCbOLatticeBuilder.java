@@ -0,0 +1,142 @@
+package glass.lattice.builder;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.List;
+
+import glass.lattice.model.impl.ClosureOperator;
+
+/**
+ * Builds the lattice of a relation in one go, by enumerating its concepts with the
+ * FCbO algorithm (Fast Close-by-One, Krajca, Outrata and Vychodil), and then computing
+ * the cover relation.
+ *
+ * FCbO walks a tree of closed intents where each intent is generated exactly once:
+ * a closure of B + {j} is only kept if it adds no attribute smaller than j (the
+ * canonicity test), and the closures that fail the test are passed down the tree so
+ * that the descendants skip the attributes that would fail it again.
+ *
+ * With a minimum support, the closures whose extent is too small are not expanded:
+ * since extents shrink down the tree, none of their descendants would qualify.
+ *
+ * For a relation that is known up front, this is typically much faster than
+ * replaying the incremental algorithm, which is still used for <code>add</code>.
+ */
+public class FCbOLatticeBuilder extends AbstractBatchLatticeBuilder {
+
+	/**
+	 * a node of the FCbO search tree: a concept, the first attribute that may
+	 * be added to its intent, and the failed closures inherited from its parent
+	 * (N_j in the paper)
+	 */
+	static class SearchNode {
+		final EncodedConcept concept;
+		final int nextAttribute;
+		final BitSet[] failedClosures;
+
+		SearchNode(EncodedConcept concept, int nextAttribute, BitSet[] failedClosures) {
+			this.concept = concept;
+			this.nextAttribute = nextAttribute;
+			this.failedClosures = failedClosures;
+		}
+	}
+
+	@Override
+	Collection<EncodedConcept> enumerateConcepts(ClosureOperator context) {
+		List<EncodedConcept> concepts = new ArrayList<EncodedConcept>();
+		Deque<SearchNode> toExpand = new ArrayDeque<SearchNode>();
+		SearchNode root = root(context);
+		if (root.concept.extent.cardinality() < minimumSupport)
+			return concepts;
+		toExpand.push(root);
+		while (!toExpand.isEmpty()) {
+			SearchNode node = toExpand.pop();
+			concepts.add(node.concept);
+			for (SearchNode child : expand(context, node, minimumSupport)) {
+				toExpand.push(child);
+			}
+		}
+		return concepts;
+	}
+
+	/**
+	 * the root of the search tree is the top concept
+	 * @param context
+	 * @return
+	 */
+	static SearchNode root(ClosureOperator context) {
+		BitSet extent = context.allObjects();
+		return new SearchNode(new EncodedConcept(extent, context.intentOf(extent)), 0,
+				new BitSet[context.attributeCount()]);
+	}
+
+	/**
+	 * returns the children of a node of the search tree, i.e. the canonical
+	 * closures of its intent + {j}, for j = nextAttribute ... n - 1, whose extent
+	 * has at least minimumSupport elements
+	 * @param context
+	 * @param node
+	 * @param minimumSupport
+	 * @return
+	 */
+	static List<SearchNode> expand(ClosureOperator context, SearchNode node, int minimumSupport) {
+		List<SearchNode> children = new ArrayList<SearchNode>();
+		BitSet extent = node.concept.extent;
+		BitSet intent = node.concept.intent;
+		int attributeCount = context.attributeCount();
+		if (intent.cardinality() == attributeCount)
+			return children;
+
+		// M_j <- N_j. The children all share M, once it is complete
+		BitSet[] failedClosures = node.failedClosures.clone();
+		List<EncodedConcept> childConcepts = new ArrayList<EncodedConcept>();
+		List<Integer> childAttributes = new ArrayList<Integer>();
+		for (int j = node.nextAttribute; j < attributeCount; j++) {
+			if (intent.get(j))
+				continue;
+			// skip j if a closure that failed higher in the tree already tells us
+			// that B + {j} is not canonical: N_j /\ Y_j <= B /\ Y_j must hold
+			BitSet failed = node.failedClosures[j];
+			if (failed != null && !isSubsetBelow(failed, intent, j))
+				continue;
+
+			BitSet childExtent = (BitSet) extent.clone();
+			childExtent.and(context.column(j));
+			if (childExtent.cardinality() < minimumSupport)
+				continue;
+			BitSet childIntent = context.intentOf(childExtent);
+
+			// canonicity test: B /\ Y_j = D /\ Y_j
+			if (isSubsetBelow(childIntent, intent, j)) {
+				childConcepts.add(new EncodedConcept(childExtent, childIntent));
+				childAttributes.add(j);
+			} else {
+				failedClosures[j] = childIntent;
+			}
+		}
+
+		for (int i = 0; i < childConcepts.size(); i++) {
+			children.add(new SearchNode(childConcepts.get(i), childAttributes.get(i) + 1, failedClosures));
+		}
+		return children;
+	}
+
+	/**
+	 * checks whether the elements of subset that are smaller than bound are all
+	 * in superset
+	 * @param subset
+	 * @param superset
+	 * @param bound
+	 * @return
+	 */
+	private static boolean isSubsetBelow(BitSet subset, BitSet superset, int bound) {
+		for (int id = subset.nextSetBit(0); id >= 0 && id < bound; id = subset.nextSetBit(id + 1)) {
+			if (!superset.get(id))
+				return false;
+		}
+		return true;
+	}
+}
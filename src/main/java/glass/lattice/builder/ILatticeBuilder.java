@@ -31,4 +31,64 @@ public interface ILatticeBuilder {
 	 */
 	public void add(ILattice lattice, Object entity, Set<Object> image);
 	
+	/**
+	 * removes entity from the lattice, which then becomes the lattice of the
+	 * relation without entity. Only the concepts whose extent contains entity are
+	 * touched: they lose entity, and those that are no longer closed are removed.
+	 * Does nothing if entity is not in the lattice
+	 * @param lattice
+	 * @param entity
+	 */
+	public void remove(ILattice lattice, Object entity);
+	
+	/**
+	 * replaces the image of entity with newImage, as if the lattice had been
+	 * built with newImage in the first place. If entity is not in the lattice,
+	 * it is simply added
+	 * @param lattice
+	 * @param entity
+	 * @param newImage
+	 */
+	public void update(ILattice lattice, Object entity, Set<Object> newImage);
+	
+	/**
+	 * adds an attribute (a column of the relation) to the lattice, held by the
+	 * given objects of its domain: the nodes whose extent is among objects get the
+	 * attribute, and the nodes for the new extents are created. If the attribute
+	 * is already in the lattice, its objects are replaced
+	 * @param lattice
+	 * @param attribute
+	 * @param objects
+	 */
+	public void addAttribute(ILattice lattice, Object attribute, Set<Object> objects);
+	
+	/**
+	 * removes an attribute (a column of the relation) from the lattice: the nodes
+	 * lose it from their intents, and those that are no longer closed are removed.
+	 * Does nothing if the attribute is not in the lattice
+	 * @param lattice
+	 * @param attribute
+	 */
+	public void removeAttribute(ILattice lattice, Object attribute);
+	
+	/**
+	 * sets the minimum support of the lattices built from now on: the concepts
+	 * whose extent has fewer elements than minimumSupport are left out (an iceberg
+	 * lattice). Top and bottom are always kept, and the concepts that are left with
+	 * no children are linked to the bottom. 0, the default, keeps every concept.
+	 * 
+	 * The incremental operations expect a lattice built without a minimum support.
+	 * The feature detection reads it from the builder (see the constructors of
+	 * <code>FeatureDetectorVisitor</code>), so that it does not look for features
+	 * below the support
+	 * @param minimumSupport
+	 */
+	public void setMinimumSupport(int minimumSupport);
+	
+	/**
+	 * returns the minimum support of the lattices built by this builder
+	 * @return
+	 */
+	public int getMinimumSupport();
+	
 }
@@ -1,20 +1,43 @@
 package glass.lattice.builder;
 
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
 import java.util.Set;
-import java.util.SortedSet;
 
+import glass.lattice.model.IIntentBuckets;
 import glass.lattice.model.ILattice;
 import glass.lattice.model.ILatticeNode;
 import glass.lattice.model.IRelation;
+import glass.lattice.model.impl.IntentBuckets;
 import glass.lattice.model.impl.Lattice;
 import glass.lattice.model.impl.LatticeNode;
-import glass.lattice.visitor.impl.BucketFillerVisitor;
+import glass.lattice.model.impl.Relation;
 
 
 public class LatticeBuilder implements ILatticeBuilder{
+	/**
+	 * concepts whose extent is smaller than this are pruned from the lattices we
+	 * build
+	 */
+	protected int minimumSupport = 0;
+
+	@Override
+	public void setMinimumSupport(int minimumSupport) {
+		this.minimumSupport = minimumSupport;
+	}
+
+	@Override
+	public int getMinimumSupport() {
+		return minimumSupport;
+	}
+
 	@Override
 	public ILattice buildLattice(IRelation aRelation) {
+		// work on a snapshot, whose images are not copied on every read
+		aRelation = snapshot(aRelation);
 
 		ILattice lattice = new Lattice();
 
@@ -29,9 +52,70 @@ public class LatticeBuilder implements ILatticeBuilder{
 			add(lattice, domainElement, elementImageSet);
 
 		}
+
+		// finally, leave out the concepts below the minimum support
+		if (minimumSupport > 0)
+			pruneInfrequentConcepts(lattice);
 		return lattice;
 	}
 
+	/**
+	 * returns a read-only snapshot of aRelation if it is a <code>Relation</code>,
+	 * whose <code>getImage</code> copies the image on every call. Other relations
+	 * are returned as they are
+	 * @param aRelation
+	 * @return
+	 */
+	protected IRelation snapshot(IRelation aRelation) {
+		if (aRelation instanceof Relation)
+			return ((Relation) aRelation).freeze();
+		return aRelation;
+	}
+
+	/**
+	 * removes the nodes whose extent is smaller than the minimum support, except top
+	 * and bottom, and links the nodes left without children to the bottom. Since the
+	 * nodes that remain are closed upwards, their links to each other are unchanged
+	 * @param lattice
+	 */
+	protected void pruneInfrequentConcepts(ILattice lattice) {
+		ILatticeNode top = lattice.getTop();
+		ILatticeNode bottom = lattice.getBottom();
+		IIntentBuckets buckets = lattice.getIntentBuckets();
+
+		// 1. collect the nodes first, since we remove them from the buckets
+		List<ILatticeNode> nodes = new ArrayList<ILatticeNode>();
+		for (Integer size : buckets.getBucketSizes()) {
+			nodes.addAll(buckets.getBucketForSize(size));
+		}
+
+		// 2. unlink and remove the infrequent ones
+		List<ILatticeNode> keptNodes = new ArrayList<ILatticeNode>();
+		for (ILatticeNode node : nodes) {
+			if (node == top || node == bottom || node.getExtent().size() >= minimumSupport) {
+				keptNodes.add(node);
+				continue;
+			}
+			for (ILatticeNode parent : new ArrayList<ILatticeNode>(node.getParents())) {
+				parent.removeChild(node);
+				node.removeParent(parent);
+			}
+			for (ILatticeNode child : new ArrayList<ILatticeNode>(node.getChildren())) {
+				child.removeParent(node);
+				node.removeChild(child);
+			}
+			buckets.remove(node);
+		}
+
+		// 3. the bottom is the only child of the nodes that lost all theirs
+		for (ILatticeNode node : keptNodes) {
+			if (node != bottom && node.getChildren().isEmpty()) {
+				node.addChild(bottom);
+				bottom.addParent(node);
+			}
+		}
+	}
+
 	@Override
 	public void initializeTopBottom(ILattice lattice, IRelation aRelation) {
 		// 1. create top LatticeNode
@@ -61,6 +145,9 @@ public class LatticeBuilder implements ILatticeBuilder{
 		topNode.addChild(bottomNode);
 		bottomNode.addParent(topNode);
 
+		// 4. file them in the intent size index of the lattice
+		lattice.getIntentBuckets().add(topNode);
+		lattice.getIntentBuckets().add(bottomNode);
 	}
 
 	@Override
@@ -71,18 +158,23 @@ public class LatticeBuilder implements ILatticeBuilder{
 	public void add(ILattice lattice, Object entity, Set<Object> image) {
 		// 12 C[i] <- {H: ||X'(H)|| = i}; {Class pairs in buckets with same
 		// cardinality of the X's sets}
-		BucketFillerVisitor currentBucketsVisitor = new BucketFillerVisitor();
-		currentBucketsVisitor.visitLatticeFromTop(lattice);
+		// the buckets are owned by the lattice, and kept up to date as we go, so
+		// there is no need to visit the whole lattice to fill them
+		IIntentBuckets currentBuckets = lattice.getIntentBuckets();
 
 		// 13 C'[i] <- 0; {Initialize the C' sets}
-		BucketFillerVisitor newBucketsVisitor = new BucketFillerVisitor();
+		IIntentBuckets newBuckets = new IntentBuckets();
 
 		// 14 {Treat each bucket in ascending cardinality order}
 		// 15 FOR i:0 TO maximum cardinality DO
-		SortedSet<Integer> currentSortedCardinalities = currentBucketsVisitor.getBucketSizesSorted();
-		for (Integer bucketSize : currentSortedCardinalities) {
+		// the nodes created along the way have a smaller intent than the node they
+		// are generated from. They thus go to buckets that were already treated, and
+		// we can walk the live set of sizes, as long as we don't use an iterator
+		Integer bucketSize = currentBuckets.getBucketSizes().isEmpty() ? null
+				: currentBuckets.getBucketSizes().first();
+		for (; bucketSize != null; bucketSize = currentBuckets.getBucketSizes().higher(bucketSize)) {
 			// 16 FOR each pair H in C[i]
-			Set<ILatticeNode> bucketOfCurrentSize = currentBucketsVisitor.getBucketForSize(bucketSize);
+			Set<ILatticeNode> bucketOfCurrentSize = currentBuckets.getBucketForSize(bucketSize);
 			for (ILatticeNode node : bucketOfCurrentSize) {
 				// this will be used in step 22 and later
 				Set<Object> intersection = null;
@@ -98,11 +190,9 @@ public class LatticeBuilder implements ILatticeBuilder{
 					// 19 Add H to C'[i]
 					// this is, in effect, saying that the modified node will
 					// remain with
-					// the same intent cardinality. Thus, we will have the
-					// <code>newBucketsVisitor</code>
-					// process this node, which in our case visits nothing: it
-					// just builds the new buckets incrementally
-					newBucketsVisitor.processNode(node);
+					// the same intent cardinality. Thus, it simply goes to the
+					// bucket of the same size in the new buckets
+					newBuckets.add(node);
 
 					// 20 IF X'(H) = f({x*}) THEN exist algorithm
 					// if, in fact, the image of entity equals the intent of
@@ -112,27 +202,30 @@ public class LatticeBuilder implements ILatticeBuilder{
 					// we can test for equality just by testing for cardinality
 					// since we already know that image
 					// CONTAINS the intent of node
-					if (image.size() == node.getIntent().size())
+					if (image.size() == node.getIntent().size()) {
+						shareEntityBetweenTopAndBottom(lattice, entity);
 						return;
+					}
 
 				} else {
 					// 21 ELSE { old pair}
 					// 22 int <- X'(H) INTER f({x*})
-					// initialize intersection to image
-					intersection = new HashSet<Object>(image);
-					intersection.retainAll(node.getIntent());
+					// the fingerprint of the intersection is summed up as we go
+					intersection = new HashSet<Object>();
+					long intersectionFingerprint = 0;
+					for (Object element : image) {
+						if (node.getIntent().contains(element)) {
+							intersection.add(element);
+							intersectionFingerprint += LatticeNode.fingerprintOf(element);
+						}
+					}
 
 					// 23 IF NOT EXIST H1 e C'[||int||] such that X'(H1) = Int
 					// THEN {H is a generator}
+					// C' is indexed by intent fingerprint, so this is a lookup
+					// rather than a scan of C'[||int||]
 					int intersectionSize = intersection.size();
-					Set<ILatticeNode> newBucket = newBucketsVisitor.getBucketForSize(intersectionSize);
-					boolean nodeIsGenerator = true;
-					if (newBucket != null) {
-						for (ILatticeNode newNode : newBucket) {
-							if (newNode.getIntent().equals(intersection))
-								nodeIsGenerator = false;
-						}
-					}
+					boolean nodeIsGenerator = newBuckets.findByIntent(intersection, intersectionFingerprint) == null;
 					//
 					if (nodeIsGenerator) {
 						// 24 Create new pair Hn = (X(H) UNION {x*}, int) and
@@ -145,8 +238,9 @@ public class LatticeBuilder implements ILatticeBuilder{
 						// then intent
 						newNode.addCollectionToIntent(intersection);
 
-						// then add to C'[||int||]
-						newBucketsVisitor.processNode(newNode);
+						// then add to C'[||int||], and to the buckets of the lattice
+						newBuckets.add(newNode);
+						currentBuckets.add(newNode);
 
 						// 25 Add edge Hn -> H
 						// link newNode to node
@@ -156,11 +250,8 @@ public class LatticeBuilder implements ILatticeBuilder{
 						// 26 {Modify edges}
 
 						// 27 FOR j:0 TO ||int|| -1
-						SortedSet<Integer> newSortedCardinalities = newBucketsVisitor.getBucketSizesSorted();
-						SortedSet<Integer> newSortedCardinalitiesLessThanIntersectionSize = newSortedCardinalities
-								.headSet(Integer.valueOf(intersectionSize));
-						for (Integer newBucketSize : newSortedCardinalitiesLessThanIntersectionSize) {
-							Set<ILatticeNode> newBucketOfCurrentSize = newBucketsVisitor.getBucketForSize(newBucketSize);
+						for (Integer newBucketSize : newBuckets.getBucketSizes().headSet(intersectionSize, false)) {
+							Set<ILatticeNode> newBucketOfCurrentSize = newBuckets.getBucketForSize(newBucketSize);
 							// 28 FOR each Ha e C'[j]
 							for (ILatticeNode potentialParent : newBucketOfCurrentSize) {
 								// 29 IF X'(Ha) <= int {Ha is a potential parent
@@ -207,7 +298,9 @@ public class LatticeBuilder implements ILatticeBuilder{
 						// 41 END FOR {FOR j:0 TO ||int|| -1 }
 
 						// 42 IF Int=f*({x*}) THEN exit algorithm END IF
-						if (intersection.equals(image))
+						// since int is a subset of f*({x*}), comparing the sizes
+						// is enough
+						if (intersectionSize == image.size())
 							return;
 					}
 					// 43 END IF {IF X'(H) <= f({x*})
@@ -216,4 +309,358 @@ public class LatticeBuilder implements ILatticeBuilder{
 		}
 	}
 
+	/**
+	 * when no object has an attribute, top and bottom have the same intent, and are
+	 * the same concept: if one of them has entity in its extent, the other gets it
+	 * as well. To be called once entity has been added
+	 * @param lattice
+	 * @param entity
+	 * @return whether an extent changed
+	 */
+	protected boolean shareEntityBetweenTopAndBottom(ILattice lattice, Object entity) {
+		ILatticeNode top = lattice.getTop();
+		ILatticeNode bottom = lattice.getBottom();
+		if (top == bottom || top.getIntent().size() != bottom.getIntent().size()
+				|| top.getExtent().contains(entity) == bottom.getExtent().contains(entity))
+			return false;
+		top.addToExtent(entity);
+		bottom.addToExtent(entity);
+		return true;
+	}
+
+	@Override
+	public void remove(ILattice lattice, Object entity) {
+		ILatticeNode top = lattice.getTop();
+		ILatticeNode bottom = lattice.getBottom();
+		IIntentBuckets buckets = lattice.getIntentBuckets();
+
+		// 1. the nodes whose extent contains entity. They form the set of the
+		// ancestors of the concept of entity, so we walk down from the top, through
+		// the nodes that contain entity
+		List<ILatticeNode> containing = new ArrayList<ILatticeNode>();
+		Set<ILatticeNode> visited = new HashSet<ILatticeNode>();
+		LinkedList<ILatticeNode> toVisit = new LinkedList<ILatticeNode>();
+		if (top.getExtent().contains(entity))
+			toVisit.add(top);
+		while (!toVisit.isEmpty()) {
+			ILatticeNode node = toVisit.removeFirst();
+			if (!visited.add(node))
+				continue;
+			containing.add(node);
+			for (ILatticeNode child : node.getChildren()) {
+				if (child.getExtent().contains(entity))
+					toVisit.add(child);
+			}
+		}
+
+		// 2. take entity out of their extents
+		for (ILatticeNode node : containing) {
+			node.removeFromExtent(entity);
+		}
+
+		// 3. a node is no longer a concept if one of its children now has the same
+		// extent: its intent is not closed anymore. Remove those nodes, but never
+		// top and bottom
+		for (ILatticeNode node : containing) {
+			if (node == top || node == bottom)
+				continue;
+			int extentSize = node.getExtent().size();
+			for (ILatticeNode child : node.getChildren()) {
+				if (child.getExtent().size() == extentSize) {
+					removeNode(lattice, node);
+					break;
+				}
+			}
+		}
+
+		// 4. the bottom only keeps the attributes that are still used, and the node
+		// that may then have the same intent takes its place
+		if (bottom.getExtent().isEmpty()) {
+			Set<Object> usedAttributes = new HashSet<Object>();
+			for (ILatticeNode parent : bottom.getParents()) {
+				usedAttributes.addAll(parent.getIntent());
+			}
+			if (usedAttributes.size() < bottom.getIntent().size()) {
+				buckets.remove(bottom);
+				bottom.setIntent(usedAttributes);
+				buckets.add(bottom);
+				// without any attribute left, the bottom is the same concept as
+				// the top, and has its extent
+				if (usedAttributes.size() == top.getIntent().size())
+					bottom.setExtent(new HashSet<Object>(top.getExtent()));
+				for (ILatticeNode parent : new ArrayList<ILatticeNode>(bottom.getParents())) {
+					if (parent != top && parent.getIntent().size() == usedAttributes.size()) {
+						removeNode(lattice, bottom);
+						lattice.setBottom(parent);
+						break;
+					}
+				}
+			}
+		}
+	}
+
+	@Override
+	public void update(ILattice lattice, Object entity, Set<Object> newImage) {
+		remove(lattice, entity);
+		extendBottom(lattice, newImage);
+		add(lattice, entity, newImage);
+	}
+
+	/**
+	 * unhooks node from the lattice, and links its parents to its children, unless
+	 * a parent is already above a child through another of its children. The order
+	 * between the nodes is read from their intents
+	 * @param lattice
+	 * @param node
+	 */
+	protected void removeNode(ILattice lattice, ILatticeNode node) {
+		removeNode(lattice, node, false);
+	}
+
+	/**
+	 * same as removeNode(lattice, node), but the order between the nodes is read
+	 * from their extents if compareExtents is true. The order must be read from
+	 * whichever side was not modified
+	 * @param lattice
+	 * @param node
+	 * @param compareExtents
+	 */
+	protected void removeNode(ILattice lattice, ILatticeNode node, boolean compareExtents) {
+		List<ILatticeNode> parents = new ArrayList<ILatticeNode>(node.getParents());
+		List<ILatticeNode> children = new ArrayList<ILatticeNode>(node.getChildren());
+		for (ILatticeNode parent : parents) {
+			parent.removeChild(node);
+			node.removeParent(parent);
+		}
+		for (ILatticeNode child : children) {
+			child.removeParent(node);
+			node.removeChild(child);
+		}
+		for (ILatticeNode parent : parents) {
+			for (ILatticeNode child : children) {
+				boolean isAbove = false;
+				for (ILatticeNode otherChild : parent.getChildren()) {
+					if (compareExtents ? otherChild.getExtent().containsAll(child.getExtent())
+							: child.getIntent().containsAll(otherChild.getIntent())) {
+						isAbove = true;
+						break;
+					}
+				}
+				if (!isAbove) {
+					parent.addChild(child);
+					child.addParent(parent);
+				}
+			}
+		}
+		lattice.getIntentBuckets().remove(node);
+	}
+
+	/**
+	 * makes sure that the intent of the bottom contains image: the attributes
+	 * that are new to the lattice are added to the bottom if its extent is empty,
+	 * or else to a new bottom, below the current one
+	 * @param lattice
+	 * @param image
+	 */
+	protected void extendBottom(ILattice lattice, Set<Object> image) {
+		ILatticeNode bottom = lattice.getBottom();
+		if (bottom.getIntent().containsAll(image))
+			return;
+		if (bottom.getExtent().isEmpty()) {
+			lattice.getIntentBuckets().remove(bottom);
+			bottom.addCollectionToIntent(image);
+			lattice.getIntentBuckets().add(bottom);
+		} else if (bottom != lattice.getTop() && bottom.getIntent().size() == lattice.getTop().getIntent().size()) {
+			// when no object has an attribute, the bottom is the same concept as
+			// the top. It is not kept above the new bottom, it becomes it
+			lattice.getIntentBuckets().remove(bottom);
+			bottom.setExtent(new HashSet<Object>());
+			bottom.addCollectionToIntent(image);
+			lattice.getIntentBuckets().add(bottom);
+		} else {
+			ILatticeNode newBottom = new LatticeNode();
+			newBottom.addCollectionToIntent(bottom.getIntent());
+			newBottom.addCollectionToIntent(image);
+			bottom.addChild(newBottom);
+			newBottom.addParent(bottom);
+			lattice.setBottom(newBottom);
+			lattice.getIntentBuckets().add(newBottom);
+		}
+	}
+
+	@Override
+	/**
+	 * this is Godin et al.'s algorithm run on the dual lattice: the nodes are
+	 * visited by ascending extent size, and each one either gets the attribute
+	 * (its extent is among objects), or generates the node whose extent is the
+	 * intersection of its extent with objects. The top keeps its empty intent, and
+	 * the node generated from the bottom, if any, becomes the bottom
+	 */
+	public void addAttribute(ILattice lattice, Object attribute, Set<Object> objects) {
+		// 0. if the attribute is already there, this is a replacement
+		if (lattice.getBottom().getIntent().contains(attribute))
+			removeAttribute(lattice, attribute);
+
+		ILatticeNode top = lattice.getTop();
+		ILatticeNode bottom = lattice.getBottom();
+		IIntentBuckets buckets = lattice.getIntentBuckets();
+		Set<Object> attributeExtent = new HashSet<Object>(objects);
+		attributeExtent.retainAll(top.getExtent());
+
+		// an attribute that no object has is left out, as the bottom only keeps the
+		// attributes in use (see remove(lattice, entity))
+		if (attributeExtent.isEmpty())
+			return;
+
+		// when no object has an attribute, the bottom is the same concept as the
+		// top. It becomes the concept of the attribute
+		if (bottom != top && bottom.getIntent().size() == top.getIntent().size()) {
+			buckets.remove(bottom);
+			bottom.setExtent(attributeExtent);
+			bottom.addToIntent(attribute);
+			buckets.add(bottom);
+			return;
+		}
+
+		// 1. the nodes by ascending extent size, the top after the nodes with as
+		// many objects
+		List<ILatticeNode> nodes = new ArrayList<ILatticeNode>();
+		for (Integer size : buckets.getBucketSizes()) {
+			nodes.addAll(buckets.getBucketForSize(size));
+		}
+		nodes.sort((first, second) -> first.getExtent().size() != second.getExtent().size()
+				? Integer.compare(first.getExtent().size(), second.getExtent().size())
+				: Boolean.compare(first == top, second == top));
+
+		// 2. the modified and new nodes, per extent size
+		HashMap<Integer, List<ILatticeNode>> newNodes = new HashMap<Integer, List<ILatticeNode>>();
+		for (ILatticeNode node : nodes) {
+			if (node != top && attributeExtent.containsAll(node.getExtent())) {
+				// the node gets the attribute
+				buckets.remove(node);
+				node.addToIntent(attribute);
+				buckets.add(node);
+				newNodes.computeIfAbsent(node.getExtent().size(), size -> new ArrayList<ILatticeNode>()).add(node);
+				if (node.getExtent().size() == attributeExtent.size())
+					return;
+			} else {
+				Set<Object> intersection = new HashSet<Object>(node.getExtent());
+				intersection.retainAll(attributeExtent);
+				int intersectionSize = intersection.size();
+
+				// is the node the generator of the intersection?
+				boolean nodeIsGenerator = true;
+				for (ILatticeNode newNode : newNodes.getOrDefault(intersectionSize, new ArrayList<ILatticeNode>())) {
+					if (newNode.getExtent().equals(intersection)) {
+						nodeIsGenerator = false;
+						break;
+					}
+				}
+				if (!nodeIsGenerator)
+					continue;
+
+				// create the node of the intersection, below the generator
+				ILatticeNode newNode = new LatticeNode();
+				newNode.addCollectionToExtent(intersection);
+				newNode.addCollectionToIntent(node.getIntent());
+				newNode.addToIntent(attribute);
+				buckets.add(newNode);
+				node.addChild(newNode);
+				newNode.addParent(node);
+				if (node == bottom)
+					lattice.setBottom(newNode);
+
+				// its children are the largest modified or new nodes below it
+				for (int size = 0; size < intersectionSize; size++) {
+					for (ILatticeNode potentialChild : newNodes.getOrDefault(size, new ArrayList<ILatticeNode>())) {
+						if (!intersection.containsAll(potentialChild.getExtent()))
+							continue;
+						boolean isChild = true;
+						for (ILatticeNode parentOfPotentialChild : potentialChild.getParents()) {
+							// the generator is left out: it is above the new node,
+							// even when they have the same extent (the top)
+							if (parentOfPotentialChild != node
+									&& intersection.containsAll(parentOfPotentialChild.getExtent())) {
+								isChild = false;
+								break;
+							}
+						}
+						if (isChild) {
+							if (node.hasChild(potentialChild)) {
+								node.removeChild(potentialChild);
+								potentialChild.removeParent(node);
+							}
+							newNode.addChild(potentialChild);
+							potentialChild.addParent(newNode);
+						}
+					}
+				}
+				newNodes.computeIfAbsent(intersectionSize, size -> new ArrayList<ILatticeNode>()).add(newNode);
+
+				if (intersectionSize == attributeExtent.size())
+					return;
+			}
+		}
+	}
+
+	@Override
+	/**
+	 * the dual of remove(lattice, entity): the attribute is taken out of the
+	 * intents of the nodes below its attribute concept, and the nodes that now
+	 * have the same intent as one of their parents are removed
+	 */
+	public void removeAttribute(ILattice lattice, Object attribute) {
+		ILatticeNode top = lattice.getTop();
+		ILatticeNode bottom = lattice.getBottom();
+		IIntentBuckets buckets = lattice.getIntentBuckets();
+
+		// 1. the nodes whose intent contains the attribute, walking up from the
+		// bottom through the nodes that contain it
+		List<ILatticeNode> containing = new ArrayList<ILatticeNode>();
+		Set<ILatticeNode> visited = new HashSet<ILatticeNode>();
+		LinkedList<ILatticeNode> toVisit = new LinkedList<ILatticeNode>();
+		if (bottom.getIntent().contains(attribute))
+			toVisit.add(bottom);
+		while (!toVisit.isEmpty()) {
+			ILatticeNode node = toVisit.removeFirst();
+			if (!visited.add(node))
+				continue;
+			containing.add(node);
+			for (ILatticeNode parent : node.getParents()) {
+				if (parent.getIntent().contains(attribute))
+					toVisit.add(parent);
+			}
+		}
+
+		// 2. take the attribute out of their intents
+		for (ILatticeNode node : containing) {
+			buckets.remove(node);
+			node.removeFromIntent(attribute);
+			buckets.add(node);
+		}
+
+		// 3. a node whose intent is now the one of a parent is no longer a concept.
+		// The bottom gives way to that parent, the other nodes are simply removed.
+		// Extents did not change, so they give the order between the nodes
+		for (ILatticeNode node : containing) {
+			if (node == top)
+				continue;
+			int intentSize = node.getIntent().size();
+			for (ILatticeNode parent : node.getParents()) {
+				if (parent.getIntent().size() == intentSize) {
+					if (node == bottom) {
+						// without any attribute left, top and bottom both have an
+						// empty intent, and both stay, with the same extent
+						if (parent == top) {
+							node.setExtent(new HashSet<Object>(top.getExtent()));
+							break;
+						}
+						lattice.setBottom(parent);
+					}
+					removeNode(lattice, node, true);
+					break;
+				}
+			}
+		}
+	}
 }
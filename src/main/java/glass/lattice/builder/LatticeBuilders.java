@@ -0,0 +1,85 @@
+package glass.lattice.builder;
+
+/**
+ * Selects the lattice construction algorithm for a run.
+ *
+ * The algorithm is either given explicitly, or read from the system property
+ * <code>glass.lattice.builder</code> (e.g. <code>-Dglass.lattice.builder=fcbo</code>).
+ * When the property is not set, Godin et al.'s incremental algorithm is used.
+ */
+public final class LatticeBuilders {
+
+	public static final String ALGORITHM_PROPERTY = "glass.lattice.builder";
+
+	public enum Algorithm {
+		/**
+		 * Godin et al.'s incremental algorithm, on the lattice nodes
+		 */
+		GODIN,
+		/**
+		 * Godin et al.'s incremental algorithm, on bit vector encoded concepts
+		 */
+		GODIN_BITSET,
+		/**
+		 * the AddIntent incremental algorithm
+		 */
+		ADD_INTENT,
+		/**
+		 * batch enumeration of the concepts with FCbO
+		 */
+		FCBO,
+		/**
+		 * batch enumeration of the concepts with FCbO, on the common fork-join pool
+		 */
+		PARALLEL_FCBO
+	}
+
+	private LatticeBuilders() {
+	}
+
+	/**
+	 * returns a new builder running algorithm
+	 * @param algorithm
+	 * @return
+	 */
+	public static ILatticeBuilder newBuilder(Algorithm algorithm) {
+		switch (algorithm) {
+		case GODIN_BITSET:
+			return new BitSetLatticeBuilder();
+		case ADD_INTENT:
+			return new AddIntentLatticeBuilder();
+		case FCBO:
+			return new FCbOLatticeBuilder();
+		case PARALLEL_FCBO:
+			return new ParallelFCbOLatticeBuilder();
+		case GODIN:
+		default:
+			return new LatticeBuilder();
+		}
+	}
+
+	/**
+	 * returns a new builder running the algorithm selected by the
+	 * <code>glass.lattice.builder</code> system property
+	 * @return
+	 */
+	public static ILatticeBuilder newBuilder() {
+		return newBuilder(getSelectedAlgorithm());
+	}
+
+	/**
+	 * returns the algorithm named by the <code>glass.lattice.builder</code> system
+	 * property, or GODIN if it is not set
+	 * @return
+	 */
+	public static Algorithm getSelectedAlgorithm() {
+		String name = System.getProperty(ALGORITHM_PROPERTY);
+		if (name == null || name.trim().isEmpty())
+			return Algorithm.GODIN;
+		try {
+			return Algorithm.valueOf(name.trim().toUpperCase().replace('-', '_'));
+		} catch (IllegalArgumentException e) {
+			throw new IllegalArgumentException("Unknown lattice construction algorithm: " + name, e);
+		}
+	}
+}
@@ -0,0 +1,167 @@
+package glass.lattice.builder;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import glass.lattice.model.impl.ClosureOperator;
+
+/**
+ * The FCbO builder, run on a fork-join pool (in the style of Parallel FCbO, Krajca,
+ * Outrata and Vychodil).
+ *
+ * The search tree of closed intents is split among the workers: the nodes of the first
+ * <code>splitDepth</code> levels are forked as separate tasks, and the sub-trees below
+ * are walked sequentially by the worker that reached them. Since the search tree does
+ * not depend on the order in which it is walked, the concepts found are those of the
+ * sequential builder. The lower covers of the concepts are then computed in parallel,
+ * one range of concepts per task, so the resulting lattice is the same as well.
+ */
+public class ParallelFCbOLatticeBuilder extends FCbOLatticeBuilder {
+
+	/**
+	 * number of concepts below which the computation of covers is not split further
+	 */
+	private static final int COVERS_PER_TASK = 64;
+
+	private ForkJoinPool pool;
+
+	private int splitDepth;
+
+	/**
+	 * a builder running on the common fork-join pool
+	 */
+	public ParallelFCbOLatticeBuilder() {
+		this(ForkJoinPool.commonPool(), 8);
+	}
+
+	/**
+	 * @param pool the pool running the tasks
+	 * @param splitDepth the depth of the search tree up to which nodes are forked
+	 * as separate tasks
+	 */
+	public ParallelFCbOLatticeBuilder(ForkJoinPool pool, int splitDepth) {
+		this.pool = pool;
+		this.splitDepth = splitDepth;
+	}
+
+	/**
+	 * expands a node of the search tree: forks its children while they are shallow
+	 * enough, or else walks its whole sub-tree
+	 */
+	private static class ExpandTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		private final ClosureOperator context;
+		private final SearchNode node;
+		private final int depth;
+		private final int splitDepth;
+		private final int minimumSupport;
+		private final Collection<EncodedConcept> concepts;
+
+		ExpandTask(ClosureOperator context, SearchNode node, int depth, int splitDepth, int minimumSupport,
+				Collection<EncodedConcept> concepts) {
+			this.context = context;
+			this.node = node;
+			this.depth = depth;
+			this.splitDepth = splitDepth;
+			this.minimumSupport = minimumSupport;
+			this.concepts = concepts;
+		}
+
+		@Override
+		protected void compute() {
+			if (depth < splitDepth) {
+				concepts.add(node.concept);
+				List<ExpandTask> subTasks = new ArrayList<ExpandTask>();
+				for (SearchNode child : expand(context, node, minimumSupport)) {
+					subTasks.add(new ExpandTask(context, child, depth + 1, splitDepth, minimumSupport, concepts));
+				}
+				invokeAll(subTasks);
+				return;
+			}
+
+			// deep enough: same walk as the sequential builder
+			List<EncodedConcept> found = new ArrayList<EncodedConcept>();
+			Deque<SearchNode> toExpand = new ArrayDeque<SearchNode>();
+			toExpand.push(node);
+			while (!toExpand.isEmpty()) {
+				SearchNode current = toExpand.pop();
+				found.add(current.concept);
+				for (SearchNode child : expand(context, current, minimumSupport)) {
+					toExpand.push(child);
+				}
+			}
+			concepts.addAll(found);
+		}
+	}
+
+	/**
+	 * computes the lower covers of concepts[from, to[
+	 */
+	private static class CoversTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		private final ClosureOperator context;
+		private final List<EncodedConcept> concepts;
+		private final HashMap<BitSet, EncodedConcept> conceptsByIntent;
+		private final int minimumSupport;
+		private final List<List<EncodedConcept>> lowerCovers;
+		private final int from;
+		private final int to;
+
+		CoversTask(ClosureOperator context, List<EncodedConcept> concepts,
+				HashMap<BitSet, EncodedConcept> conceptsByIntent, int minimumSupport,
+				List<List<EncodedConcept>> lowerCovers, int from, int to) {
+			this.context = context;
+			this.concepts = concepts;
+			this.conceptsByIntent = conceptsByIntent;
+			this.minimumSupport = minimumSupport;
+			this.lowerCovers = lowerCovers;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute() {
+			if (to - from <= COVERS_PER_TASK) {
+				for (int i = from; i < to; i++) {
+					lowerCovers.set(i, lowerCovers(context, concepts.get(i), conceptsByIntent, minimumSupport));
+				}
+				return;
+			}
+			int middle = (from + to) >>> 1;
+			invokeAll(new CoversTask(context, concepts, conceptsByIntent, minimumSupport, lowerCovers, from, middle),
+					new CoversTask(context, concepts, conceptsByIntent, minimumSupport, lowerCovers, middle, to));
+		}
+	}
+
+	@Override
+	Collection<EncodedConcept> enumerateConcepts(ClosureOperator context) {
+		ConcurrentLinkedQueue<EncodedConcept> concepts = new ConcurrentLinkedQueue<EncodedConcept>();
+		SearchNode root = root(context);
+		if (root.concept.extent.cardinality() >= minimumSupport)
+			pool.invoke(new ExpandTask(context, root, 0, splitDepth, minimumSupport, concepts));
+		return concepts;
+	}
+
+	@Override
+	List<List<EncodedConcept>> computeLowerCovers(ClosureOperator context, List<EncodedConcept> concepts,
+			HashMap<BitSet, EncodedConcept> conceptsByIntent) {
+		// the map is only read from now on, so it can be shared by the tasks, and
+		// each task sets its own range of the (fixed size) list
+		List<List<EncodedConcept>> lowerCovers = new ArrayList<List<EncodedConcept>>(
+				Collections.nCopies(concepts.size(), null));
+		pool.invoke(new CoversTask(context, concepts, conceptsByIntent, minimumSupport, lowerCovers, 0,
+				concepts.size()));
+		return lowerCovers;
+	}
+}
@@ -0,0 +1,68 @@
+package glass.lattice.model;
+
+import java.util.NavigableSet;
+import java.util.Set;
+
+/**
+ * The nodes of a lattice grouped by the cardinality of their intent (the buckets
+ * C[i] of Godin et al.'s algorithm), and indexed by intent.
+ *
+ * A node is filed under the size its intent had when it was added, so code that
+ * changes the intent of an indexed node must remove the node first, and add it back
+ * afterwards.
+ */
+public interface IIntentBuckets {
+
+	/**
+	 * files node in the bucket of the current size of its intent
+	 * @param node
+	 */
+	public void add(ILatticeNode node);
+
+	/**
+	 * removes node from the bucket of the current size of its intent. Does
+	 * nothing if it is not there
+	 * @param node
+	 */
+	public void remove(ILatticeNode node);
+
+	/**
+	 * returns the node whose intent is intent, or null if there is none
+	 * @param intent
+	 * @param fingerprint the fingerprint of intent
+	 * @return
+	 */
+	public ILatticeNode findByIntent(Set<Object> intent, long fingerprint);
+
+	/**
+	 * returns the node whose intent is intent, or null if there is none
+	 * @param intent
+	 * @return
+	 */
+	public ILatticeNode findByIntent(Set<Object> intent);
+
+	/**
+	 * returns the bucket containing lattice nodes whose intent has cardinality size,
+	 * or null if there are none
+	 * @param size
+	 * @return
+	 */
+	public Set<ILatticeNode> getBucketForSize(int size);
+
+	/**
+	 * returns a live, read-only, view of the sizes of the non empty buckets,
+	 * in ascending order. Since it is not a copy, callers that add nodes while
+	 * iterating should walk it with <code>higher(...)</code> rather than with
+	 * an iterator
+	 * @return
+	 */
+	public NavigableSet<Integer> getBucketSizes();
+
+	public boolean isEmpty();
+
+	/**
+	 * returns the number of nodes in the index
+	 * @return
+	 */
+	public int size();
+}
@@ -14,4 +14,11 @@ public interface ILattice {
 	public void acceptTopVisitor(IVisitor aVisitor);
 	
 	public void acceptBottomVisitor (IVisitor aVisitor);
+	
+	/**
+	 * returns the index of the nodes of the lattice by intent size. Builders keep
+	 * it up to date as they create, modify and delete nodes
+	 * @return
+	 */
+	public IIntentBuckets getIntentBuckets();
 }
@@ -25,6 +25,15 @@ public interface ILatticeNode {
 	
 	public Set<Object> getIntent();
 	
+	/**
+	 * returns a 64 bit fingerprint of the intent, which does not depend on the
+	 * order of its elements. It is kept up to date by the methods that change the
+	 * intent, so it costs nothing to read. Equal intents have equal fingerprints;
+	 * the converse is only very likely
+	 * @return
+	 */
+	public long getIntentFingerprint();
+	
 	public Set<ILatticeNode> getParents();
 	
 	public Set<ILatticeNode> getChildren();
@@ -47,6 +47,14 @@ public interface IRelation {
 	 */
 	public Set<Object> getImage(Object domainElement);
 	
+	/**
+	 * returns the domain elements whose image contains anImage, i.e. the extent of
+	 * anImage. If no domain element has anImage, it returns an empty set
+	 * @param anImage
+	 * @return
+	 */
+	public Set<Object> getPreimage(Object anImage);
+	
 	/**
 	 * checks whether the domain of a relation contains an object 
 	 * @param anObject
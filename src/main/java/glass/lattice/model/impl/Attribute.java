@@ -1,72 +1,96 @@
 package glass.lattice.model.impl;
 
-import glass.ast.IMethod;
 import glass.ast.IType;
 
+/**
+ * An attribute of an extended reverse inheritance relation: a flyweight over a row
+ * of an <code>AttributeTable</code>, which stores its signature, its type and its
+ * flags.
+ */
 public class Attribute {
 
-	private final String name;
-	private final boolean isRoot;
-	private final boolean isLeaf;
-	private final boolean isExtendedAttribute;
-	private final IType type;
-	private boolean isAdhoc = false;
-	
+	private final AttributeTable table;
+	private final int id;
+
+	Attribute(AttributeTable table, int id) {
+		this.table = table;
+		this.id = id;
+	}
+
+	/**
+	 * a standalone attribute, with a table of its own
+	 */
 	public Attribute(String signature, boolean isRoot, boolean isLeaf, boolean isExtendedAttribute, IType relatedType) {
-		this.name = signature;
-		this.isRoot = isRoot;
-		this.isLeaf = isLeaf;
-		this.isExtendedAttribute = isExtendedAttribute;
-		this.type = relatedType;
+		this.table = new AttributeTable();
+		this.id = this.table.add(signature, (byte) ((isRoot ? AttributeTable.ROOT : 0)
+				| (isLeaf ? AttributeTable.LEAF : 0) | (isExtendedAttribute ? AttributeTable.EXTENDED : 0)),
+				relatedType);
 	}
-	
+
 	public Attribute(String signature) {
 		this(signature, false, false, false, null);
 	}
-	
+
+	public int getId() {
+		return this.id;
+	}
+
 	public String getName() {
-		return this.name;
+		return this.table.getName(this.id);
 	}
-	
+
 	public boolean isRoot() {
-		return this.isRoot;
+		return this.table.hasFlag(this.id, AttributeTable.ROOT);
 	}
-	
+
 	public boolean isLeaf() {
-		return this.isLeaf;
+		return this.table.hasFlag(this.id, AttributeTable.LEAF);
 	}
-	
+
 	public boolean isExtendedAttribute() {
-		return this.isExtendedAttribute;
+		return this.table.hasFlag(this.id, AttributeTable.EXTENDED);
 	}
-	
+
 	// Todo : raise exception when type is null
 	public IType getType() {
-		return this.type;
+		return this.table.getType(this.id);
 	}
-	
+
 	public void setAdhoc(boolean isAdhoc) {
-		this.isAdhoc = isAdhoc;
+		this.table.setFlag(this.id, AttributeTable.ADHOC, isAdhoc);
 	}
-	
+
 	public boolean isAdhoc() {
-		return this.isAdhoc;
+		return this.table.hasFlag(this.id, AttributeTable.ADHOC);
+	}
+
+	@Override
+	public boolean equals(Object anObject) {
+		if (!(anObject instanceof Attribute))
+			return false;
+		Attribute other = (Attribute) anObject;
+		return this.table == other.table && this.id == other.id;
 	}
-	
+
+	@Override
+	public int hashCode() {
+		return System.identityHashCode(this.table) * 31 + this.id;
+	}
+
 	@Override
 	public String toString() {
-		if (!this.isExtendedAttribute) {
-			return name;
+		if (!this.isExtendedAttribute()) {
+			return this.getName();
 		}
 		StringBuilder fullName = new StringBuilder();
-		if (this.isRoot) {
+		if (this.isRoot()) {
 			fullName.append("root ");
 		}
-		if (this.isLeaf) {
+		if (this.isLeaf()) {
 			fullName.append("leaf ");
 		}
-		fullName.append(this.type.getFullyQualifiedName() + " ");
-		fullName.append(this.name);
+		fullName.append(this.getType().getFullyQualifiedName() + " ");
+		fullName.append(this.getName());
 		return fullName.toString();
 	}
 }
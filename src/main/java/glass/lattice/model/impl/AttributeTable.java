@@ -0,0 +1,109 @@
+package glass.lattice.model.impl;
+
+import java.util.Arrays;
+
+import glass.ast.IType;
+
+/**
+ * A columnar store of the attributes of an extended reverse inheritance relation:
+ * each attribute is an int id, and its signature, its type and its flags (root,
+ * leaf, extended, ad hoc) are stored in parallel arrays, the signatures and types
+ * being interned. The <code>Attribute</code> objects put in the relation are
+ * flyweights, holding the table and an id, created once per attribute.
+ */
+public class AttributeTable {
+
+	public static final byte ROOT = 1;
+
+	public static final byte LEAF = 2;
+
+	public static final byte EXTENDED = 4;
+
+	public static final byte ADHOC = 8;
+
+	private ElementIndex signatures = new ElementIndex();
+
+	private ElementIndex types = new ElementIndex();
+
+	private int size = 0;
+
+	private int[] signatureIds = new int[16];
+
+	private int[] typeIds = new int[16];
+
+	private byte[] flags = new byte[16];
+
+	private Attribute[] attributes = new Attribute[16];
+
+	/**
+	 * adds an attribute to the table
+	 * @param signature
+	 * @param attributeFlags a combination of ROOT, LEAF, EXTENDED and ADHOC
+	 * @param type the type of an extended attribute, or null
+	 * @return the id of the new attribute
+	 */
+	public int add(String signature, byte attributeFlags, IType type) {
+		if (size == flags.length) {
+			int capacity = size << 1;
+			signatureIds = Arrays.copyOf(signatureIds, capacity);
+			typeIds = Arrays.copyOf(typeIds, capacity);
+			flags = Arrays.copyOf(flags, capacity);
+			attributes = Arrays.copyOf(attributes, capacity);
+		}
+		signatureIds[size] = signatures.intern(signature);
+		typeIds[size] = type == null ? -1 : types.intern(type);
+		flags[size] = attributeFlags;
+		return size++;
+	}
+
+	/**
+	 * returns the attribute id, as an object that can be put in a relation
+	 * @param id
+	 * @return
+	 */
+	public Attribute get(int id) {
+		Attribute attribute = attributes[id];
+		if (attribute == null) {
+			attribute = new Attribute(this, id);
+			attributes[id] = attribute;
+		}
+		return attribute;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * returns the id of signature, interning it if needed. Attributes with equal
+	 * signatures share the signature id
+	 * @param signature
+	 * @return
+	 */
+	public int internSignature(String signature) {
+		return signatures.intern(signature);
+	}
+
+	public int getSignatureId(int id) {
+		return signatureIds[id];
+	}
+
+	public String getName(int id) {
+		return (String) signatures.get(signatureIds[id]);
+	}
+
+	public IType getType(int id) {
+		return typeIds[id] < 0 ? null : (IType) types.get(typeIds[id]);
+	}
+
+	public boolean hasFlag(int id, byte flag) {
+		return (flags[id] & flag) != 0;
+	}
+
+	public void setFlag(int id, byte flag, boolean value) {
+		if (value)
+			flags[id] |= flag;
+		else
+			flags[id] &= ~flag;
+	}
+}
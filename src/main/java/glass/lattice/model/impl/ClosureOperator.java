@@ -0,0 +1,299 @@
+package glass.lattice.model.impl;
+
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+import glass.lattice.model.IRelation;
+
+/**
+ * The derivation operators of a relation (its formal context), on bit vectors:
+ * <code>extentOf</code> (B', the objects having all the attributes of B) and
+ * <code>intentOf</code> (A', the attributes shared by all the objects of A), and the
+ * closure B'' that they make up.
+ *
+ * The domain elements (objects) and the images (attributes) are interned to dense
+ * ids, and the relation is stored as bit vector rows (object -> attributes) and
+ * columns (attribute -> objects). The relation is read once, when the operator is
+ * created: later changes to it are not seen. The rows of a <code>MappedRelation</code>
+ * are decoded from the file directly, as its elements already have dense ids, but
+ * they are then held on the heap, with their columns, as for any other relation:
+ * the operator materializes the whole context, and the mapping only spares the heap
+ * for as long as the relation is read through its own methods.
+ *
+ * <code>intentOf</code> keeps the most recently computed intents in a bounded memo
+ * cache, keyed by extent, so that the closures that several callers need (e.g. the
+ * enumeration of concepts, then the computation of their covers) are computed once.
+ * The cache is split into independently locked segments, and the operator can thus
+ * be shared between threads. The bit vectors it returns are shared as well, and must
+ * not be modified, except for those returned by <code>extentOf</code>.
+ */
+public class ClosureOperator {
+
+	/**
+	 * the default number of intents kept in the memo cache
+	 */
+	public static final int DEFAULT_CACHE_SIZE = 1 << 16;
+
+	private static final int SEGMENT_COUNT = 16;
+
+	/**
+	 * a segment of the memo cache: a LinkedHashMap in access order, which drops its
+	 * least recently used entry when it is full
+	 */
+	private static class CacheSegment extends LinkedHashMap<BitSet, BitSet> {
+		private static final long serialVersionUID = 1L;
+
+		private final int capacity;
+
+		CacheSegment(int capacity) {
+			super(16, 0.75f, true);
+			this.capacity = capacity;
+		}
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<BitSet, BitSet> eldest) {
+			return size() > capacity;
+		}
+	}
+
+	private ElementIndex objects = new ElementIndex();
+
+	private ElementIndex attributes = new ElementIndex();
+
+	private BitSet[] rows;
+
+	private BitSet[] columns;
+
+	private BitSet allObjects;
+
+	private BitSet allAttributes;
+
+	private CacheSegment[] cache;
+
+	public ClosureOperator(IRelation aRelation) {
+		this(aRelation, DEFAULT_CACHE_SIZE);
+	}
+
+	/**
+	 * @param aRelation
+	 * @param cacheSize the number of intents kept in the memo cache. 0 disables
+	 * the cache
+	 */
+	public ClosureOperator(IRelation aRelation, int cacheSize) {
+		// first, intern the domain and the images, and fill the rows
+		if (aRelation instanceof MappedRelation) {
+			readRows((MappedRelation) aRelation);
+		} else {
+			rows = new BitSet[aRelation.getDomain().size()];
+			for (Object domainElement : aRelation.getDomain()) {
+				int objectId = objects.intern(domainElement);
+				rows[objectId] = attributes.encode(aRelation.getImage(domainElement));
+			}
+		}
+
+		// then, transpose the rows into columns
+		columns = new BitSet[attributes.size()];
+		for (int attributeId = 0; attributeId < columns.length; attributeId++) {
+			columns[attributeId] = new BitSet(rows.length);
+		}
+		for (int objectId = 0; objectId < rows.length; objectId++) {
+			BitSet row = rows[objectId];
+			for (int attributeId = row.nextSetBit(0); attributeId >= 0; attributeId = row.nextSetBit(attributeId + 1)) {
+				columns[attributeId].set(objectId);
+			}
+		}
+
+		allObjects = new BitSet(rows.length);
+		allObjects.set(0, rows.length);
+		allAttributes = new BitSet(columns.length);
+		allAttributes.set(0, columns.length);
+
+		if (cacheSize > 0) {
+			cache = new CacheSegment[SEGMENT_COUNT];
+			for (int i = 0; i < SEGMENT_COUNT; i++) {
+				cache[i] = new CacheSegment(Math.max(1, cacheSize / SEGMENT_COUNT));
+			}
+		}
+	}
+
+	/**
+	 * interns the domain and the images of a mapped relation in the order of their
+	 * ids, which are then the same as in the file, and takes its rows as they are
+	 * decoded, rather than through its image views
+	 * @param aRelation
+	 */
+	private void readRows(MappedRelation aRelation) {
+		for (int attributeId = 0; attributeId < aRelation.getAttributeCount(); attributeId++) {
+			attributes.intern(aRelation.getAttribute(attributeId));
+		}
+		rows = new BitSet[aRelation.getDomainSize()];
+		for (int objectId = 0; objectId < rows.length; objectId++) {
+			objects.intern(aRelation.getObject(objectId));
+			rows[objectId] = aRelation.row(objectId);
+		}
+	}
+
+	public int objectCount() {
+		return rows.length;
+	}
+
+	public int attributeCount() {
+		return columns.length;
+	}
+
+	public ElementIndex getObjects() {
+		return objects;
+	}
+
+	public ElementIndex getAttributes() {
+		return attributes;
+	}
+
+	/**
+	 * returns the attributes of objectId
+	 * @param objectId
+	 * @return
+	 */
+	public BitSet row(int objectId) {
+		return rows[objectId];
+	}
+
+	/**
+	 * returns the objects having attributeId
+	 * @param attributeId
+	 * @return
+	 */
+	public BitSet column(int attributeId) {
+		return columns[attributeId];
+	}
+
+	public BitSet allObjects() {
+		return (BitSet) allObjects.clone();
+	}
+
+	public BitSet allAttributes() {
+		return (BitSet) allAttributes.clone();
+	}
+
+	/**
+	 * B': the objects that have all the attributes of intent. The result is a new
+	 * bit vector, which the caller may modify
+	 * @param intent
+	 * @return
+	 */
+	public BitSet extentOf(BitSet intent) {
+		BitSet extent = allObjects();
+		for (int attributeId = intent.nextSetBit(0); attributeId >= 0; attributeId = intent.nextSetBit(attributeId + 1)) {
+			extent.and(columns[attributeId]);
+		}
+		return extent;
+	}
+
+	/**
+	 * A': the attributes shared by all the objects of extent. For an empty extent,
+	 * this is the set of all attributes. The result may come from the cache, and
+	 * must not be modified
+	 * @param extent
+	 * @return
+	 */
+	public BitSet intentOf(BitSet extent) {
+		if (cache == null)
+			return computeIntentOf(extent);
+
+		CacheSegment segment = cache[(extent.hashCode() & 0x7fffffff) % SEGMENT_COUNT];
+		BitSet intent;
+		synchronized (segment) {
+			intent = segment.get(extent);
+		}
+		if (intent == null) {
+			intent = computeIntentOf(extent);
+			synchronized (segment) {
+				segment.put((BitSet) extent.clone(), intent);
+			}
+		}
+		return intent;
+	}
+
+	/**
+	 * B'': the closure of intent, i.e. the intent of the smallest concept whose
+	 * intent contains intent. The result must not be modified
+	 * @param intent
+	 * @return
+	 */
+	public BitSet closure(BitSet intent) {
+		return intentOf(extentOf(intent));
+	}
+
+	/**
+	 * checks whether all the elements of someObjects are in the domain of the
+	 * relation
+	 * @param someObjects
+	 * @return
+	 */
+	public boolean containsObjects(Collection<?> someObjects) {
+		for (Object anObject : someObjects) {
+			if (objects.idOf(anObject) < 0)
+				return false;
+		}
+		return true;
+	}
+
+	/**
+	 * A' for a set of domain elements. The elements that are not in the domain are
+	 * ignored
+	 * @param someObjects
+	 * @return
+	 */
+	public Set<Object> intentOf(Collection<?> someObjects) {
+		return attributes.decode(intentOf(encode(objects, someObjects)));
+	}
+
+	/**
+	 * B' for a set of images. The images that are not in the relation are ignored
+	 * @param someAttributes
+	 * @return
+	 */
+	public Set<Object> extentOf(Collection<?> someAttributes) {
+		return objects.decode(extentOf(encode(attributes, someAttributes)));
+	}
+
+	/**
+	 * B'' for a set of images. The images that are not in the relation are ignored
+	 * @param someAttributes
+	 * @return
+	 */
+	public Set<Object> closure(Collection<?> someAttributes) {
+		return attributes.decode(closure(encode(attributes, someAttributes)));
+	}
+
+	private BitSet computeIntentOf(BitSet extent) {
+		int objectId = extent.nextSetBit(0);
+		if (objectId < 0)
+			return allAttributes();
+		BitSet intent = (BitSet) rows[objectId].clone();
+		for (objectId = extent.nextSetBit(objectId + 1); objectId >= 0 && !intent.isEmpty(); objectId = extent
+				.nextSetBit(objectId + 1)) {
+			intent.and(rows[objectId]);
+		}
+		return intent;
+	}
+
+	/**
+	 * encodes the elements of index among elements, without interning new ones
+	 * @param index
+	 * @param elements
+	 * @return
+	 */
+	private static BitSet encode(ElementIndex index, Collection<?> elements) {
+		BitSet encoded = new BitSet(index.size());
+		for (Object element : elements) {
+			int id = index.idOf(element);
+			if (id >= 0)
+				encoded.set(id);
+		}
+		return encoded;
+	}
+}
@@ -0,0 +1,304 @@
+package glass.lattice.model.impl;
+
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+import glass.lattice.model.IRelation;
+
+/**
+ * An immutable snapshot of a relation, stored in compressed sparse row (CSR) form:
+ * the domain elements and the images are interned to int ids, and the images of
+ * domain element i are the attribute ids attributeIds[rowOffsets[i]] ...
+ * attributeIds[rowOffsets[i + 1] - 1], sorted. The transposed relation (the
+ * preimages) is stored the same way, in columnOffsets and objectIds.
+ *
+ * Unlike <code>Relation</code>, <code>getImage</code>, <code>getPreimage</code>,
+ * <code>getDomain</code> and <code>getAllImages</code> return read-only views of the
+ * snapshot instead of copies. The views of the images and preimages are created on
+ * first use and then reused, so reading the same image again allocates nothing.
+ *
+ * The methods that change the relation throw UnsupportedOperationException.
+ */
+public class CompressedRelation implements IRelation {
+
+	private ElementIndex objects = new ElementIndex();
+
+	private ElementIndex attributes = new ElementIndex();
+
+	private int[] rowOffsets;
+
+	private int[] attributeIds;
+
+	private int[] columnOffsets;
+
+	private int[] objectIds;
+
+	private SliceView[] images;
+
+	private SliceView[] preimages;
+
+	private Set<Object> domain;
+
+	private Set<Object> allImages;
+
+	/**
+	 * snapshot of a map from domain elements to their images, e.g. the store of a
+	 * <code>Relation</code>
+	 * @param relationStore
+	 */
+	CompressedRelation(Map<Object, ? extends Collection<Object>> relationStore) {
+		// 1. intern the domain and the images, and count the pairs
+		int pairCount = 0;
+		for (Map.Entry<Object, ? extends Collection<Object>> entry : relationStore.entrySet()) {
+			objects.intern(entry.getKey());
+			for (Object image : entry.getValue()) {
+				attributes.intern(image);
+			}
+			pairCount += entry.getValue().size();
+		}
+
+		// 2. fill the rows, in the order of the domain ids
+		rowOffsets = new int[objects.size() + 1];
+		attributeIds = new int[pairCount];
+		int offset = 0;
+		for (int objectId = 0; objectId < objects.size(); objectId++) {
+			rowOffsets[objectId] = offset;
+			for (Object image : relationStore.get(objects.get(objectId))) {
+				attributeIds[offset++] = attributes.idOf(image);
+			}
+			Arrays.sort(attributeIds, rowOffsets[objectId], offset);
+		}
+		rowOffsets[objects.size()] = offset;
+
+		// 3. transpose the rows into the columns. Walking the rows in order keeps
+		// each column sorted
+		columnOffsets = new int[attributes.size() + 1];
+		objectIds = new int[pairCount];
+		for (int attributeId : attributeIds) {
+			columnOffsets[attributeId + 1]++;
+		}
+		for (int attributeId = 0; attributeId < attributes.size(); attributeId++) {
+			columnOffsets[attributeId + 1] += columnOffsets[attributeId];
+		}
+		int[] nextInColumn = Arrays.copyOf(columnOffsets, attributes.size());
+		for (int objectId = 0; objectId < objects.size(); objectId++) {
+			for (int position = rowOffsets[objectId]; position < rowOffsets[objectId + 1]; position++) {
+				objectIds[nextInColumn[attributeIds[position]]++] = objectId;
+			}
+		}
+
+		images = new SliceView[objects.size()];
+		preimages = new SliceView[attributes.size()];
+		domain = new ElementView(objects);
+		allImages = new ElementView(attributes);
+	}
+
+	/**
+	 * returns a snapshot of aRelation
+	 * @param aRelation
+	 * @return
+	 */
+	public static CompressedRelation of(IRelation aRelation) {
+		if (aRelation instanceof CompressedRelation)
+			return (CompressedRelation) aRelation;
+		if (aRelation instanceof Relation)
+			return ((Relation) aRelation).freeze();
+		HashMap<Object, Set<Object>> relationStore = new HashMap<Object, Set<Object>>();
+		for (Object domainElement : aRelation.getDomain()) {
+			relationStore.put(domainElement, aRelation.getImage(domainElement));
+		}
+		return new CompressedRelation(relationStore);
+	}
+
+	/**
+	 * a read-only view of all the elements of an index
+	 */
+	private static class ElementView extends AbstractSet<Object> {
+		private final ElementIndex index;
+
+		ElementView(ElementIndex index) {
+			this.index = index;
+		}
+
+		@Override
+		public boolean contains(Object anObject) {
+			return index.idOf(anObject) >= 0;
+		}
+
+		@Override
+		public Iterator<Object> iterator() {
+			return new Iterator<Object>() {
+				private int id = 0;
+
+				@Override
+				public boolean hasNext() {
+					return id < index.size();
+				}
+
+				@Override
+				public Object next() {
+					if (!hasNext())
+						throw new NoSuchElementException();
+					return index.get(id++);
+				}
+			};
+		}
+
+		@Override
+		public int size() {
+			return index.size();
+		}
+	}
+
+	/**
+	 * a read-only view of a row (an image) or of a column (a preimage): the
+	 * elements of index whose ids are ids[from] ... ids[to - 1]
+	 */
+	private static class SliceView extends AbstractSet<Object> {
+		private final ElementIndex index;
+		private final int[] ids;
+		private final int from;
+		private final int to;
+
+		SliceView(ElementIndex index, int[] ids, int from, int to) {
+			this.index = index;
+			this.ids = ids;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		public boolean contains(Object anObject) {
+			int id = index.idOf(anObject);
+			return id >= 0 && Arrays.binarySearch(ids, from, to, id) >= 0;
+		}
+
+		@Override
+		public Iterator<Object> iterator() {
+			return new Iterator<Object>() {
+				private int position = from;
+
+				@Override
+				public boolean hasNext() {
+					return position < to;
+				}
+
+				@Override
+				public Object next() {
+					if (!hasNext())
+						throw new NoSuchElementException();
+					return index.get(ids[position++]);
+				}
+			};
+		}
+
+		@Override
+		public int size() {
+			return to - from;
+		}
+	}
+
+	@Override
+	public void addToDomain(Object anObject) {
+		throw new UnsupportedOperationException("A compressed relation cannot be modified");
+	}
+
+	@Override
+	public void removeFromDomain(Object anObject) {
+		throw new UnsupportedOperationException("A compressed relation cannot be modified");
+	}
+
+	@Override
+	public void addRelation(Object key, Object value) {
+		throw new UnsupportedOperationException("A compressed relation cannot be modified");
+	}
+
+	@Override
+	public void removeRelation(Object key, Object value) {
+		throw new UnsupportedOperationException("A compressed relation cannot be modified");
+	}
+
+	@Override
+	public Set<Object> getDomain() {
+		return domain;
+	}
+
+	@Override
+	/**
+	 * returns a read-only view of the image of domainElement, or null if it is not
+	 * in the domain
+	 */
+	public Set<Object> getImage(Object domainElement) {
+		int objectId = objects.idOf(domainElement);
+		if (objectId < 0)
+			return null;
+		SliceView image = images[objectId];
+		if (image == null) {
+			image = new SliceView(attributes, attributeIds, rowOffsets[objectId], rowOffsets[objectId + 1]);
+			images[objectId] = image;
+		}
+		return image;
+	}
+
+	@Override
+	/**
+	 * returns a read-only view of the preimage of anImage
+	 */
+	public Set<Object> getPreimage(Object anImage) {
+		int attributeId = attributes.idOf(anImage);
+		if (attributeId < 0)
+			return Collections.emptySet();
+		SliceView preimage = preimages[attributeId];
+		if (preimage == null) {
+			preimage = new SliceView(objects, objectIds, columnOffsets[attributeId], columnOffsets[attributeId + 1]);
+			preimages[attributeId] = preimage;
+		}
+		return preimage;
+	}
+
+	@Override
+	public boolean domainContains(Object anObject) {
+		return objects.idOf(anObject) >= 0;
+	}
+
+	@Override
+	public boolean containsRelation(Object key, Object value) {
+		int objectId = objects.idOf(key);
+		int attributeId = attributes.idOf(value);
+		return objectId >= 0 && attributeId >= 0
+				&& Arrays.binarySearch(attributeIds, rowOffsets[objectId], rowOffsets[objectId + 1], attributeId) >= 0;
+	}
+
+	@Override
+	public Set<Object> getAllImages() {
+		return allImages;
+	}
+
+	/**
+	 * returns the number of domain elements
+	 * @return
+	 */
+	public int getDomainSize() {
+		return objects.size();
+	}
+
+	/**
+	 * returns the number of pairs of the relation
+	 * @return
+	 */
+	public int getPairCount() {
+		return attributeIds.length;
+	}
+
+	@Override
+	public String printString() {
+		return RelationPrinter.printString(this, String::valueOf, String::valueOf);
+	}
+}
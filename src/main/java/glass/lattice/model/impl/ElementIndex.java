@@ -0,0 +1,101 @@
+package glass.lattice.model.impl;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Interns objects (domain elements or attributes of a relation) to dense int ids,
+ * 0, 1, 2, ... in order of first appearance. This is what allows sets of elements
+ * to be stored as bit vectors, where bit i stands for the element with id i.
+ */
+public class ElementIndex {
+
+	private HashMap<Object, Integer> ids = new HashMap<Object, Integer>();
+
+	private ArrayList<Object> elements = new ArrayList<Object>();
+
+	/**
+	 * returns the id of anObject, assigning it the next free id if this is the first
+	 * time we see it
+	 * @param anObject
+	 * @return
+	 */
+	public int intern(Object anObject) {
+		Integer id = ids.get(anObject);
+		if (id == null) {
+			id = elements.size();
+			ids.put(anObject, id);
+			elements.add(anObject);
+		}
+		return id;
+	}
+
+	/**
+	 * returns the id of anObject, or -1 if it was never interned
+	 * @param anObject
+	 * @return
+	 */
+	public int idOf(Object anObject) {
+		Integer id = ids.get(anObject);
+		return id == null ? -1 : id;
+	}
+
+	/**
+	 * returns the element whose id is id
+	 * @param id
+	 * @return
+	 */
+	public Object get(int id) {
+		return elements.get(id);
+	}
+
+	public int size() {
+		return elements.size();
+	}
+
+	/**
+	 * returns the bit vector of a collection of elements. Elements that were not
+	 * interned yet are interned on the fly
+	 * @param collection
+	 * @return
+	 */
+	public BitSet encode(Collection<?> collection) {
+		BitSet bits = new BitSet(elements.size());
+		for (Object element : collection) {
+			bits.set(intern(element));
+		}
+		return bits;
+	}
+
+	/**
+	 * returns a new set with the elements whose ids are set in bits
+	 * @param bits
+	 * @return
+	 */
+	public Set<Object> decode(BitSet bits) {
+		Set<Object> decoded = new HashSet<Object>();
+		for (int id = bits.nextSetBit(0); id >= 0; id = bits.nextSetBit(id + 1)) {
+			decoded.add(elements.get(id));
+		}
+		return decoded;
+	}
+
+	/**
+	 * checks whether every bit set in subset is also set in superset, without
+	 * allocating an intermediate bit vector
+	 * @param subset
+	 * @param superset
+	 * @return
+	 */
+	public static boolean isSubset(BitSet subset, BitSet superset) {
+		for (int id = subset.nextSetBit(0); id >= 0; id = subset.nextSetBit(id + 1)) {
+			if (!superset.get(id))
+				return false;
+		}
+		return true;
+	}
+}
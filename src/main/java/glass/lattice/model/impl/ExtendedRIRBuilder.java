@@ -1,44 +1,62 @@
 package glass.lattice.model.impl;
 
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
-import java.util.Iterator;
 import java.util.Map;
 import java.util.Set;
 
 import glass.ast.IMethod;
 import glass.ast.IProject;
 import glass.ast.IType;
+import glass.ast.TypeHierarchyIndex;
 import glass.lattice.model.IRelation;
 import glass.lattice.model.IRelationBuilder;
 
+/**
+ * Builds the extended reverse inheritance relation, whose attributes are the
+ * signatures of the methods (normal attributes), and the (type, signature) pairs
+ * of the types that declare them (extended attributes).
+ * 
+ * The attributes are stored in an <code>AttributeTable</code>, and the attributes of
+ * each type (normal, extended, inherited) are kept as sets of attribute ids, indexed
+ * by the id of the type in the type hierarchy.
+ */
 public class ExtendedRIRBuilder implements IRelationBuilder {
 	
 	private IRelation extendedRelation;
+	private AttributeTable attributeTable;
 	private Map<IType, Set<String>> localInterfaces;
-	private Map<String, Attribute> signatureAttrMap;
+	private int[] signatureAttrMap;
+	private Map<String, BitSet> declaringTypes;
+	private Map<Long, Integer> typeAndSignatureToExtendedAttr;
 	private Collection<IType> definedTypes;
-	private Map<Object, Set<Attribute>> normalAttrMap;
-	private Map<Object, Set<Attribute>> extendedAttrMap;
-	private Map<Object, Set<Attribute>> inheritedAttrMap;
-	private Map<Object, Set<Attribute>> reverseInheritedAttrMap;
-	private Map<Object, Set<Attribute>> signatureAndTypeToInheritedAttrMap;
+	private TypeHierarchyIndex typeHierarchy;
+	private IntSet[] normalAttrMap;
+	private IntSet[] extendedAttrMap;
+	private IntSet[] inheritedAttrMap;
+	private Map<Long, IntSet> signatureAndTypeToInheritedAttrMap;
 	
 	public ExtendedRIRBuilder() {
 		this.extendedRelation = new Relation();
+		this.attributeTable = new AttributeTable();
 		this.localInterfaces = new HashMap<IType, Set<String>>();
-		this.signatureAttrMap = new HashMap<String, Attribute>();
-		this.normalAttrMap = new HashMap<Object, Set<Attribute>>();
-		this.extendedAttrMap = new HashMap<Object, Set<Attribute>>();
-		this.inheritedAttrMap = new HashMap<Object, Set<Attribute>>();
-		this.signatureAndTypeToInheritedAttrMap = new HashMap<Object, Set<Attribute>>();
-		this.reverseInheritedAttrMap = new HashMap<Object, Set<Attribute>>();
+		this.signatureAttrMap = new int[0];
+		this.declaringTypes = new HashMap<String, BitSet>();
+		this.typeAndSignatureToExtendedAttr = new HashMap<Long, Integer>();
+		this.signatureAndTypeToInheritedAttrMap = new HashMap<Long, IntSet>();
 	}
 
 	@Override
 	public IRelation buildRelationFrom(IProject project) {
 		this.definedTypes = project.getDefinedTypes();
+		this.typeHierarchy = new TypeHierarchyIndex(this.definedTypes);
+		this.normalAttrMap = new IntSet[this.typeHierarchy.size()];
+		this.extendedAttrMap = new IntSet[this.typeHierarchy.size()];
+		this.inheritedAttrMap = new IntSet[this.typeHierarchy.size()];
+		this.indexDeclaringTypes();
 		for (IType type : this.definedTypes) {
 			this.addTypeAttributesToRelation(type);
 		}
@@ -52,15 +70,44 @@ public class ExtendedRIRBuilder implements IRelationBuilder {
 		return extendedRelation;
 	}
 	
-	private void addToAttrMap(Object key, Attribute attr, Map<Object, Set<Attribute>> attrMap) {
-		Set<Attribute> attrSet = null;
-		if (!attrMap.containsKey(key)) {
-			attrSet = new HashSet<Attribute>();
+	/**
+	 * records the local interface of every type of the hierarchy, and, for each
+	 * signature, the ids of the types that declare it
+	 */
+	private void indexDeclaringTypes() {
+		for (int typeId = 0; typeId < this.typeHierarchy.size(); typeId++) {
+			IType type = this.typeHierarchy.get(typeId);
+			this.putLocalInterface(type);
+			for (String signature : this.localInterfaces.get(type)) {
+				BitSet types = this.declaringTypes.get(signature);
+				if (types == null) {
+					types = new BitSet();
+					this.declaringTypes.put(signature, types);
+				}
+				types.set(typeId);
+			}
+		}
+	}
+	
+	/**
+	 * adds the attribute attrId to the type typeId in attrMap, and to the relation
+	 */
+	private void addToRelation(int typeId, int attrId, IntSet[] attrMap) {
+		if (attrMap[typeId] == null) {
+			attrMap[typeId] = new IntSet();
+		}
+		if (attrMap[typeId].add(attrId)) {
+			this.extendedRelation.addRelation(this.typeHierarchy.get(typeId), this.attributeTable.get(attrId));
+		}
+	}
+	
+	private void addToAttrMap(long key, int attrId, Map<Long, IntSet> attrMap) {
+		IntSet attrSet = attrMap.get(key);
+		if (attrSet == null) {
+			attrSet = new IntSet();
 			attrMap.put(key, attrSet);
-		} else {
-			attrSet = attrMap.get(key);
 		}
-		attrSet.add(attr);
+		attrSet.add(attrId);
 	}
 	
 	private Set<String> putLocalInterface(IType type) {
@@ -71,110 +118,118 @@ public class ExtendedRIRBuilder implements IRelationBuilder {
 		return this.localInterfaces.put(type, localInterface);
 	}
 	
+	/**
+	 * returns the id of the normal attribute of signature, creating it if needed
+	 */
+	private int normalAttribute(String signature) {
+		int signatureId = this.attributeTable.internSignature(signature);
+		if (signatureId >= this.signatureAttrMap.length) {
+			int oldLength = this.signatureAttrMap.length;
+			this.signatureAttrMap = Arrays.copyOf(this.signatureAttrMap, Math.max(16, signatureId * 2));
+			Arrays.fill(this.signatureAttrMap, oldLength, this.signatureAttrMap.length, -1);
+		}
+		if (this.signatureAttrMap[signatureId] < 0) {
+			this.signatureAttrMap[signatureId] = this.attributeTable.add(signature, (byte) 0, null);
+		}
+		return this.signatureAttrMap[signatureId];
+	}
+	
 	private void addTypeAttributesToRelation(IType type) {
-		this.putLocalInterface(type);
+		int typeId = this.typeHierarchy.idOf(type);
 		for (IMethod method : type.getLocalMethods()) {
-			String signature = method.getSignature();
-			if (!this.signatureAttrMap.containsKey(signature)) {
-				final Attribute attr = new Attribute(signature);
-				this.signatureAttrMap.put(signature, attr);
-			}
-			this.extendedRelation.addRelation(type, this.signatureAttrMap.get(signature));
-			this.addToAttrMap(type, this.signatureAttrMap.get(signature), this.normalAttrMap);
-			this.addExtendedAttributeToRelation(type, method);
+			this.addToRelation(typeId, this.normalAttribute(method.getSignature()), this.normalAttrMap);
+			this.addExtendedAttributeToRelation(typeId, method);
 		}
 	}
 	
-	private void addExtendedAttributeToRelation(IType type, IMethod method) {
+	private void addExtendedAttributeToRelation(int typeId, IMethod method) {
 		String signature = method.getSignature();
-		IType[] subTypes = type.getAllSubtypes();
-		IType[] superTypes = type.getAllSupertypes();
-		boolean isRoot = this.detectDuplicateSignature(signature, subTypes);
-		boolean isLeaf = this.detectDuplicateSignature(signature, superTypes);
+		// a root if none of its subtypes declares the signature, and a leaf if none
+		// of its supertypes does
+		BitSet typesDeclaringSignature = this.declaringTypes.get(signature);
+		boolean isRoot = !typesDeclaringSignature.intersects(this.typeHierarchy.descendants(typeId));
+		boolean isLeaf = !typesDeclaringSignature.intersects(this.typeHierarchy.ancestors(typeId));
 		
-		final Attribute extendedAttr = new Attribute(signature, isRoot, isLeaf, true, type);
-		this.addToAttrMap(type, extendedAttr, extendedAttrMap);
-		this.extendedRelation.addRelation(type, extendedAttr);
-	}
-	
-	private boolean detectDuplicateSignature(String signature, IType[] otherTypes) {
-		boolean noDuplicates = true;
-		int i = 0;
-		
-		while (noDuplicates && i<otherTypes.length) {
-			IType otherType = otherTypes[i];
-			if (!this.localInterfaces.containsKey(otherType)) {
-				this.putLocalInterface(otherType);
-			}
-			Iterator<String> itSignatures = this.localInterfaces.get(otherType).iterator();
-			while (noDuplicates && itSignatures.hasNext()) {
-				String otherTypeSignature = itSignatures.next();
-				if (signature.equals(otherTypeSignature)) {
-					noDuplicates = false;
-				}
-			}
-			i++;
-		}
-		return noDuplicates;
+		int extendedAttr = this.attributeTable.add(signature, (byte) ((isRoot ? AttributeTable.ROOT : 0)
+				| (isLeaf ? AttributeTable.LEAF : 0) | AttributeTable.EXTENDED), this.typeHierarchy.get(typeId));
+		this.typeAndSignatureToExtendedAttr.put(this.hashTypeAttribute(typeId, extendedAttr), extendedAttr);
+		this.addToRelation(typeId, extendedAttr, this.extendedAttrMap);
 	}
 
 	private void inheritExtendedAttributes(IType type) {
-		IType[] superTypes = type.getAllSupertypes();
+		int typeId = this.typeHierarchy.idOf(type);
 		Set<String> localInterface = this.localInterfaces.get(type);
-		for (IType superType : superTypes) {
-			if (!this.extendedAttrMap.containsKey(superType)) {
-				continue;
-			}
-			Set<Attribute> extendedAttrSet = this.extendedAttrMap.get(superType);
-			for (Attribute extendedAttr : extendedAttrSet) {
-				if (localInterface.contains(extendedAttr.getName())) {
-					this.addToAttrMap(type, extendedAttr, this.inheritedAttrMap);
-					this.extendedRelation.addRelation(type, extendedAttr);
-					this.addToAttrMap(this.hashTypeAttribute(type, extendedAttr), extendedAttr, this.signatureAndTypeToInheritedAttrMap);
+		// the type inherits the extended attributes of the signatures of its local
+		// interface from the supertypes that declare them as well
+		for (String signature : localInterface) {
+			int signatureId = this.attributeTable.internSignature(signature);
+			BitSet superTypes = (BitSet) this.declaringTypes.get(signature).clone();
+			superTypes.and(this.typeHierarchy.ancestors(typeId));
+			for (int superTypeId = superTypes.nextSetBit(0); superTypeId >= 0; superTypeId = superTypes.nextSetBit(superTypeId + 1)) {
+				Integer extendedAttr = this.typeAndSignatureToExtendedAttr.get(hashTypeSignature(superTypeId, signatureId));
+				if (extendedAttr != null) {
+					this.addToRelation(typeId, extendedAttr, this.inheritedAttrMap);
+					this.addToAttrMap(hashTypeSignature(typeId, signatureId), extendedAttr, this.signatureAndTypeToInheritedAttrMap);
 				}
 			}
 		}
 	}
 	
 	private void reverseInheritAttributes(IType type) {
-		IType[] subTypes = type.getAllSubtypes();
+		int typeId = this.typeHierarchy.idOf(type);
+		BitSet subTypes = this.typeHierarchy.descendants(typeId);
 		Set<String> localInterface = this.localInterfaces.get(type);
-		for (IType subType : subTypes) {
-			if (!this.normalAttrMap.containsKey(subType)) { // ugly :(
+		for (int subTypeId = subTypes.nextSetBit(0); subTypeId >= 0; subTypeId = subTypes.nextSetBit(subTypeId + 1)) {
+			if (this.normalAttrMap[subTypeId] == null) { // ugly :(
 				continue;
 			}
-			Set<Attribute> subTypeNormalAttributes = this.normalAttrMap.get(subType);
-			for (Attribute regularAttr : subTypeNormalAttributes) {
-				this.addToAttrMap(type, regularAttr, normalAttrMap);
-				this.extendedRelation.addRelation(type, regularAttr);
-			}
-			if (!this.extendedAttrMap.containsKey(subType)) {
+			this.normalAttrMap[subTypeId].forEach(regularAttr -> this.addToRelation(typeId, regularAttr, this.normalAttrMap));
+			if (this.extendedAttrMap[subTypeId] == null) {
 				continue;
 			}
-			Set<Attribute> subTypeExtendedAttributes = this.extendedAttrMap.get(subType);
-			for (Attribute extendedAttr : subTypeExtendedAttributes) {
-				if (!localInterface.contains(extendedAttr.getName())) {
-					String hashedTypeAttr = this.hashTypeAttribute(subType, extendedAttr);
-					if (this.signatureAndTypeToInheritedAttrMap.containsKey(hashedTypeAttr)) {
-						Set<Attribute> relatedInheritedAttr = this.signatureAndTypeToInheritedAttrMap.get(this.hashTypeAttribute(subType, extendedAttr));
-						for (Attribute attr : relatedInheritedAttr) {
-							this.addToAttrMap(type, attr, inheritedAttrMap);
-							this.extendedRelation.addRelation(type, attr);
-						}
+			final int subType = subTypeId;
+			this.extendedAttrMap[subTypeId].forEach(extendedAttr -> {
+				if (!localInterface.contains(this.attributeTable.getName(extendedAttr))) {
+					IntSet relatedInheritedAttr = this.signatureAndTypeToInheritedAttrMap.get(this.hashTypeAttribute(subType, extendedAttr));
+					if (relatedInheritedAttr != null) {
+						relatedInheritedAttr.forEach(attr -> this.addToRelation(typeId, attr, this.inheritedAttrMap));
 					}
 				}
-				this.addToAttrMap(type, extendedAttr, extendedAttrMap);
-				this.extendedRelation.addRelation(type, extendedAttr);
-			}
+				this.addToRelation(typeId, extendedAttr, this.extendedAttrMap);
+			});
 		}
 	}
 	
-	private String hashTypeAttribute(IType type, Attribute attr) {
-		return type.getFullyQualifiedName() + attr.getName();
+	/**
+	 * the key of a (type, signature) pair: the id of the type in the hierarchy,
+	 * and the id of the signature of the attribute
+	 */
+	private long hashTypeAttribute(int typeId, int attrId) {
+		return hashTypeSignature(typeId, this.attributeTable.getSignatureId(attrId));
+	}
+	
+	private static long hashTypeSignature(int typeId, int signatureId) {
+		return ((long) typeId << 32) | signatureId;
+	}
+	
+	public AttributeTable getAttributeTable() {
+		return this.attributeTable;
 	}
 	
 	public Map<IType, Set<String>> getLocalInterfaces() {
 		return this.localInterfaces;
 	}
 	
+	/**
+	 * returns the hierarchy of the defined types, which is indexed when the
+	 * relation is built
+	 * @return
+	 */
+	public TypeHierarchyIndex getTypeHierarchy() {
+		if (this.typeHierarchy == null)
+			throw new IllegalStateException(
+					"No type hierarchy: the relation has not been built from a project (see buildRelationFrom)");
+		return this.typeHierarchy;
+	}
+	
 }
@@ -0,0 +1,61 @@
+package glass.lattice.model.impl;
+
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.concurrent.ConcurrentHashMap;
+
+import glass.ast.IMethod;
+import glass.ast.IType;
+
+/**
+ * The signatures of the methods of the types outside of the project (e.g.
+ * java.lang.Object), used by the relation builders to filter out of the domain
+ * interfaces the redefinitions of external methods.
+ *
+ * The signatures of an external type are collected once, the first time a type of
+ * the project inherits from it, and then shared by all the other types of the
+ * project, as bit vectors of signature ids, so that checking whether a method
+ * redefines an external one is a bit test per external ancestor. This relies on similar methods (see
+ * <code>IMethod.isSimilar(...)</code>) having the same signature.
+ *
+ * The cache can be used by several threads.
+ */
+class ExternalSignatureCache {
+
+	private ConcurrentHashMap<IType, BitSet> signatures = new ConcurrentHashMap<IType, BitSet>();
+
+	/**
+	 * returns the signature ids of all the methods of externalType, inherited ones
+	 * included. The bit vector is shared, and must not be modified
+	 * @param externalType
+	 * @return
+	 */
+	BitSet signaturesOf(IType externalType) {
+		BitSet typeSignatures = signatures.get(externalType);
+		if (typeSignatures == null) {
+			typeSignatures = new BitSet();
+			for (IMethod method : externalType.getMethods()) {
+				typeSignatures.set(method.getSignatureId());
+			}
+			BitSet previous = signatures.putIfAbsent(externalType, typeSignatures);
+			if (previous != null)
+				typeSignatures = previous;
+		}
+		return typeSignatures;
+	}
+
+	/**
+	 * checks whether method redefines a method of one of externalTypes
+	 * @param method
+	 * @param externalTypes
+	 * @return
+	 */
+	boolean redefinesAny(IMethod method, Collection<IType> externalTypes) {
+		int signatureId = method.getSignatureId();
+		for (IType externalType : externalTypes) {
+			if (signaturesOf(externalType).get(signatureId))
+				return true;
+		}
+		return false;
+	}
+}
@@ -0,0 +1,113 @@
+package glass.lattice.model.impl;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * A set of non-negative ints, stored in an open-addressing hash table of primitive
+ * ints (linear probing), instead of a HashSet of Integer objects.
+ */
+class IntSet {
+
+	private static final int FREE = -1;
+
+	private int[] slots;
+
+	private int size = 0;
+
+	IntSet() {
+		this(4);
+	}
+
+	/**
+	 * @param expectedSize the number of elements the set holds before it grows
+	 */
+	IntSet(int expectedSize) {
+		int capacity = 8;
+		while (capacity * 3 < expectedSize * 4) {
+			capacity <<= 1;
+		}
+		slots = new int[capacity];
+		Arrays.fill(slots, FREE);
+	}
+
+	/**
+	 * adds element to the set
+	 * @param element
+	 * @return true if the set did not contain it yet
+	 */
+	boolean add(int element) {
+		if (element < 0)
+			throw new IllegalArgumentException("Only non-negative ints can be added: " + element);
+		int slot = find(slots, element);
+		if (slots[slot] == element)
+			return false;
+		slots[slot] = element;
+		size++;
+		// keep the table at most 3/4 full
+		if (size * 4 > slots.length * 3)
+			grow();
+		return true;
+	}
+
+	boolean contains(int element) {
+		return element >= 0 && slots[find(slots, element)] == element;
+	}
+
+	int size() {
+		return size;
+	}
+
+	boolean isEmpty() {
+		return size == 0;
+	}
+
+	/**
+	 * applies action to each element of the set
+	 * @param action
+	 */
+	void forEach(IntConsumer action) {
+		for (int element : slots) {
+			if (element != FREE)
+				action.accept(element);
+		}
+	}
+
+	/**
+	 * returns the elements of the set, in no particular order
+	 * @return
+	 */
+	int[] toArray() {
+		int[] elements = new int[size];
+		int i = 0;
+		for (int element : slots) {
+			if (element != FREE)
+				elements[i++] = element;
+		}
+		return elements;
+	}
+
+	private void grow() {
+		int[] oldSlots = slots;
+		slots = new int[oldSlots.length << 1];
+		Arrays.fill(slots, FREE);
+		for (int element : oldSlots) {
+			if (element != FREE)
+				slots[find(slots, element)] = element;
+		}
+	}
+
+	/**
+	 * returns the slot holding element, or the free slot where it would go
+	 */
+	private static int find(int[] someSlots, int element) {
+		int mask = someSlots.length - 1;
+		// spread the bits, so that runs of consecutive ints do not cluster
+		int hash = element * 0x9E3779B9;
+		int slot = (hash ^ (hash >>> 16)) & mask;
+		while (someSlots[slot] != FREE && someSlots[slot] != element) {
+			slot = (slot + 1) & mask;
+		}
+		return slot;
+	}
+}
@@ -0,0 +1,122 @@
+package glass.lattice.model.impl;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.TreeMap;
+
+import glass.lattice.model.IIntentBuckets;
+import glass.lattice.model.ILatticeNode;
+
+/**
+ * The buckets C[i] of Godin et al.'s algorithm: lattice nodes grouped by the
+ * cardinality of their intent.
+ *
+ * Unlike <code>BucketFillerVisitor</code>, which rebuilds the buckets by visiting
+ * the whole lattice, this index is maintained in place: nodes are added when they
+ * are created, and removed when they are deleted. A node is filed under the size
+ * its intent had when it was added. Thus, code that changes the intent of an indexed
+ * node must remove the node first, and add it back afterwards.
+ *
+ * Each bucket is also indexed by intent fingerprint (see
+ * <code>ILatticeNode.getIntentFingerprint()</code>), so that the node having a given
+ * intent, if any, is found without scanning the bucket.
+ */
+public class IntentBuckets implements IIntentBuckets {
+
+	private TreeMap<Integer, Set<ILatticeNode>> bucketsPerSize = new TreeMap<Integer, Set<ILatticeNode>>();
+
+	/**
+	 * for each size, the nodes of the bucket, per intent fingerprint
+	 */
+	private HashMap<Integer, HashMap<Long, List<ILatticeNode>>> fingerprintsPerSize = new HashMap<Integer, HashMap<Long, List<ILatticeNode>>>();
+
+	private int nodeCount = 0;
+
+	@Override
+	public void add(ILatticeNode node) {
+		Integer size = node.getIntent().size();
+		Set<ILatticeNode> bucket = bucketsPerSize.get(size);
+		if (bucket == null) {
+			bucket = new HashSet<ILatticeNode>();
+			bucketsPerSize.put(size, bucket);
+		}
+		if (bucket.add(node)) {
+			nodeCount++;
+			HashMap<Long, List<ILatticeNode>> fingerprints = fingerprintsPerSize.get(size);
+			if (fingerprints == null) {
+				fingerprints = new HashMap<Long, List<ILatticeNode>>();
+				fingerprintsPerSize.put(size, fingerprints);
+			}
+			List<ILatticeNode> nodes = fingerprints.get(node.getIntentFingerprint());
+			if (nodes == null) {
+				nodes = new ArrayList<ILatticeNode>(1);
+				fingerprints.put(node.getIntentFingerprint(), nodes);
+			}
+			nodes.add(node);
+		}
+	}
+
+	@Override
+	public void remove(ILatticeNode node) {
+		Integer size = node.getIntent().size();
+		Set<ILatticeNode> bucket = bucketsPerSize.get(size);
+		if (bucket != null && bucket.remove(node)) {
+			nodeCount--;
+			HashMap<Long, List<ILatticeNode>> fingerprints = fingerprintsPerSize.get(size);
+			List<ILatticeNode> nodes = fingerprints.get(node.getIntentFingerprint());
+			nodes.remove(node);
+			if (nodes.isEmpty())
+				fingerprints.remove(node.getIntentFingerprint());
+			if (bucket.isEmpty()) {
+				bucketsPerSize.remove(size);
+				fingerprintsPerSize.remove(size);
+			}
+		}
+	}
+
+	@Override
+	public ILatticeNode findByIntent(Set<Object> intent, long fingerprint) {
+		HashMap<Long, List<ILatticeNode>> fingerprints = fingerprintsPerSize.get(intent.size());
+		if (fingerprints == null)
+			return null;
+		List<ILatticeNode> nodes = fingerprints.get(fingerprint);
+		if (nodes == null)
+			return null;
+		// fingerprints may collide, so we still compare the intents
+		for (ILatticeNode node : nodes) {
+			if (node.getIntent().equals(intent))
+				return node;
+		}
+		return null;
+	}
+
+	@Override
+	public ILatticeNode findByIntent(Set<Object> intent) {
+		return findByIntent(intent, LatticeNode.fingerprint(intent));
+	}
+
+	@Override
+	public Set<ILatticeNode> getBucketForSize(int size) {
+		return bucketsPerSize.get(size);
+	}
+
+	@Override
+	public NavigableSet<Integer> getBucketSizes() {
+		return Collections.unmodifiableNavigableSet(bucketsPerSize.navigableKeySet());
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return nodeCount == 0;
+	}
+
+	@Override
+	public int size() {
+		return nodeCount;
+	}
+}
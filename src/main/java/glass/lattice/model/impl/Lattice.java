@@ -1,5 +1,10 @@
 package glass.lattice.model.impl;
 
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.Set;
+
+import glass.lattice.model.IIntentBuckets;
 import glass.lattice.model.ILattice;
 import glass.lattice.model.ILatticeNode;
 import glass.lattice.visitor.IVisitor;
@@ -8,6 +13,7 @@ public class Lattice implements ILattice{
 	
 	private ILatticeNode top;
 	private ILatticeNode bottom;
+	private IntentBuckets intentBuckets = new IntentBuckets();
 
 	@Override
 	public ILatticeNode getTop() {
@@ -39,4 +45,26 @@ public class Lattice implements ILattice{
 		aVisitor.visitLatticeFromBottom(this);
 	}
 
+	/**
+	 * if the nodes of the lattice were not registered as they were created (e.g. the
+	 * lattice was assembled by hand), the index is filled by walking the lattice
+	 * down from the top the first time it is asked for
+	 */
+	@Override
+	public IIntentBuckets getIntentBuckets() {
+		if (intentBuckets.isEmpty() && top != null) {
+			Set<ILatticeNode> visited = new HashSet<ILatticeNode>();
+			LinkedList<ILatticeNode> toVisit = new LinkedList<ILatticeNode>();
+			toVisit.add(top);
+			while (!toVisit.isEmpty()) {
+				ILatticeNode node = toVisit.removeFirst();
+				if (visited.add(node)) {
+					intentBuckets.add(node);
+					toVisit.addAll(node.getChildren());
+				}
+			}
+		}
+		return intentBuckets;
+	}
+
 }
@@ -16,6 +16,11 @@ public class LatticeNode implements ILatticeNode{
 	private Set<Object> intent;
 	private Set<Object> extent;
 	
+	/**
+	 * the sum of the hashes of the elements of the intent, see fingerprint(...)
+	 */
+	private long intentFingerprint = 0;
+	
 	private transient Set<ILatticeNode> parents;
 	private Set<ILatticeNode> children;
 	private List<NodeFeatureType> types = new ArrayList<NodeFeatureType>();
@@ -44,7 +49,9 @@ public class LatticeNode implements ILatticeNode{
 
 	@Override
 	public void addCollectionToIntent(Collection<Object> properties) {
-		intent.addAll(properties);
+		for (Object property : properties) {
+			addToIntent(property);
+		}
 	}
 
 	@Override
@@ -54,12 +61,14 @@ public class LatticeNode implements ILatticeNode{
 
 	@Override
 	public void removeFromIntent(Object anObject) {
-		intent.remove(anObject);
+		if (intent.remove(anObject))
+			intentFingerprint -= fingerprintOf(anObject);
 	}
 
 	@Override
 	public void addToIntent(Object anObject) {
-		intent.add(anObject);
+		if (intent.add(anObject))
+			intentFingerprint += fingerprintOf(anObject);
 	}
 
 	@Override
@@ -67,6 +76,39 @@ public class LatticeNode implements ILatticeNode{
 		return intent;
 	}
 
+	@Override
+	public long getIntentFingerprint() {
+		return intentFingerprint;
+	}
+
+	/**
+	 * the fingerprint of a set of elements: the sum of the (well mixed) 64 bit
+	 * hashes of its elements. Being a sum, it can be updated one element at a time,
+	 * in any order
+	 * @param elements
+	 * @return
+	 */
+	public static long fingerprint(Collection<?> elements) {
+		long fingerprint = 0;
+		for (Object element : elements) {
+			fingerprint += fingerprintOf(element);
+		}
+		return fingerprint;
+	}
+
+	/**
+	 * the contribution of one element to a fingerprint: its hash code, spread over
+	 * 64 bits with the SplitMix64 finalizer
+	 * @param element
+	 * @return
+	 */
+	public static long fingerprintOf(Object element) {
+		long z = element.hashCode() * 0x9E3779B97F4A7C15L;
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		return z ^ (z >>> 31);
+	}
+
 	@Override
 	public Set<ILatticeNode> getParents() {
 		return parents;
@@ -150,6 +192,7 @@ public class LatticeNode implements ILatticeNode{
 	@Override
 	public void setIntent(Set<Object> intent) {
 		this.intent = intent;
+		this.intentFingerprint = fingerprint(intent);
 	}
 
 	@Override
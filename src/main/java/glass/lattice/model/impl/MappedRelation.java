@@ -0,0 +1,363 @@
+package glass.lattice.model.impl;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractSet;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+import glass.lattice.model.IRelation;
+
+/**
+ * A read-only relation backed by a file written by
+ * <code>RelationIO.writeMapped(...)</code>: the row index and the rows, as packed
+ * bit vectors, are memory-mapped, so that they are read from the page cache when
+ * needed instead of being held on the heap. Only the names of the domain elements
+ * and of the images (Strings) are loaded.
+ *
+ * The file is mapped in chunks of at most 1 GB, as a single mapping cannot exceed
+ * 2 GB. <code>getImage</code> returns a view of the row, which tests the bits in
+ * the mapping directly, and decodes the row the first time it is iterated over.
+ * <code>getPreimage</code> scans one word of every row.
+ *
+ * The methods that change the relation throw UnsupportedOperationException.
+ */
+public class MappedRelation implements IRelation {
+
+	private static final int CHUNK_BITS = 30;
+
+	private static final long CHUNK_MASK = (1L << CHUNK_BITS) - 1;
+
+	private MappedByteBuffer[] chunks;
+
+	private int objectCount;
+
+	private int attributeCount;
+
+	private ElementIndex objects = new ElementIndex();
+
+	private ElementIndex attributes = new ElementIndex();
+
+	private Set<Object> domain;
+
+	private Set<Object> allImages;
+
+	/**
+	 * @param file a file written by <code>RelationIO.writeMapped(...)</code>
+	 * @throws IOException if the file is not in the random-access format
+	 */
+	public MappedRelation(Path file) throws IOException {
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			// 1. map the file, chunk by chunk. The chunks are multiples of 8 bytes, so
+			// that no word spans two of them
+			long size = channel.size();
+			chunks = new MappedByteBuffer[(int) ((size + CHUNK_MASK) >>> CHUNK_BITS)];
+			for (int i = 0; i < chunks.length; i++) {
+				long start = (long) i << CHUNK_BITS;
+				chunks[i] = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(CHUNK_MASK + 1, size - start));
+			}
+
+			// 2. the header
+			if (size < RelationIO.MAPPED_HEADER_SIZE || chunks[0].getInt(0) != RelationIO.MAPPED_MAGIC)
+				throw new IOException("Not a mapped relation: " + file);
+			if (chunks[0].getInt(4) != RelationIO.MAPPED_VERSION)
+				throw new IOException("Unsupported mapped relation version: " + chunks[0].getInt(4));
+			objectCount = chunks[0].getInt(8);
+			attributeCount = chunks[0].getInt(12);
+			long namesOffset = chunks[0].getLong(16);
+
+			// 3. the names, which are read once
+			channel.position(namesOffset);
+			DataInputStream data = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel)));
+			for (String name : RelationIO.readNames(data)) {
+				objects.intern(name);
+			}
+			for (String name : RelationIO.readNames(data)) {
+				attributes.intern(name);
+			}
+			if (objects.size() != objectCount || attributes.size() != attributeCount)
+				throw new IOException("Corrupted mapped relation: " + file);
+		}
+		domain = new ElementView(objects);
+		allImages = new ElementView(attributes);
+	}
+
+	/**
+	 * returns the number of domain elements
+	 * @return
+	 */
+	public int getDomainSize() {
+		return objectCount;
+	}
+
+	public int getAttributeCount() {
+		return attributeCount;
+	}
+
+	/**
+	 * returns the name of the domain element whose id is objectId
+	 * @param objectId
+	 * @return
+	 */
+	public Object getObject(int objectId) {
+		return objects.get(objectId);
+	}
+
+	/**
+	 * returns the name of the image whose id is attributeId
+	 * @param attributeId
+	 * @return
+	 */
+	public Object getAttribute(int attributeId) {
+		return attributes.get(attributeId);
+	}
+
+	/**
+	 * decodes the row of objectId: the ids of the images of the domain element
+	 * @param objectId
+	 * @return a new bit vector
+	 */
+	public BitSet row(int objectId) {
+		long start = rowStart(objectId);
+		long[] words = new long[(int) ((rowStart(objectId + 1) - start) >>> 3)];
+		for (int i = 0; i < words.length; i++) {
+			words[i] = wordAt(start + 8L * i);
+		}
+		return BitSet.valueOf(words);
+	}
+
+	/**
+	 * checks whether the domain element objectId has the image attributeId,
+	 * without decoding its row
+	 * @param objectId
+	 * @param attributeId
+	 * @return
+	 */
+	public boolean contains(int objectId, int attributeId) {
+		long start = rowStart(objectId);
+		long position = start + 8L * (attributeId >>> 6);
+		return position < rowStart(objectId + 1) && (wordAt(position) & (1L << attributeId)) != 0;
+	}
+
+	private long rowStart(int objectId) {
+		return wordAt(RelationIO.MAPPED_HEADER_SIZE + 8L * objectId);
+	}
+
+	private long wordAt(long position) {
+		return chunks[(int) (position >>> CHUNK_BITS)].getLong((int) (position & CHUNK_MASK));
+	}
+
+	/**
+	 * a read-only view of all the elements of an index
+	 */
+	private static class ElementView extends AbstractSet<Object> {
+		private final ElementIndex index;
+
+		ElementView(ElementIndex index) {
+			this.index = index;
+		}
+
+		@Override
+		public boolean contains(Object anObject) {
+			return index.idOf(anObject) >= 0;
+		}
+
+		@Override
+		public Iterator<Object> iterator() {
+			return new Iterator<Object>() {
+				private int id = 0;
+
+				@Override
+				public boolean hasNext() {
+					return id < index.size();
+				}
+
+				@Override
+				public Object next() {
+					if (!hasNext())
+						throw new NoSuchElementException();
+					return index.get(id++);
+				}
+			};
+		}
+
+		@Override
+		public int size() {
+			return index.size();
+		}
+	}
+
+	/**
+	 * a read-only view of the image of a domain element. Membership is tested in
+	 * the mapping, and the row is decoded on first iteration
+	 */
+	private class ImageView extends AbstractSet<Object> {
+		private final int objectId;
+		private BitSet bits = null;
+
+		ImageView(int objectId) {
+			this.objectId = objectId;
+		}
+
+		private BitSet bits() {
+			if (bits == null)
+				bits = row(objectId);
+			return bits;
+		}
+
+		@Override
+		public boolean contains(Object anObject) {
+			int attributeId = attributes.idOf(anObject);
+			return attributeId >= 0 && MappedRelation.this.contains(objectId, attributeId);
+		}
+
+		@Override
+		public Iterator<Object> iterator() {
+			return new BitIterator(attributes, bits());
+		}
+
+		@Override
+		public int size() {
+			return bits().cardinality();
+		}
+	}
+
+	/**
+	 * a read-only view of the elements of index whose ids are in bits
+	 */
+	private static class BitSetView extends AbstractSet<Object> {
+		private final ElementIndex index;
+		private final BitSet bits;
+
+		BitSetView(ElementIndex index, BitSet bits) {
+			this.index = index;
+			this.bits = bits;
+		}
+
+		@Override
+		public boolean contains(Object anObject) {
+			int id = index.idOf(anObject);
+			return id >= 0 && bits.get(id);
+		}
+
+		@Override
+		public Iterator<Object> iterator() {
+			return new BitIterator(index, bits);
+		}
+
+		@Override
+		public int size() {
+			return bits.cardinality();
+		}
+	}
+
+	private static class BitIterator implements Iterator<Object> {
+		private final ElementIndex index;
+		private final BitSet bits;
+		private int id;
+
+		BitIterator(ElementIndex index, BitSet bits) {
+			this.index = index;
+			this.bits = bits;
+			this.id = bits.nextSetBit(0);
+		}
+
+		@Override
+		public boolean hasNext() {
+			return id >= 0;
+		}
+
+		@Override
+		public Object next() {
+			if (!hasNext())
+				throw new NoSuchElementException();
+			Object element = index.get(id);
+			id = bits.nextSetBit(id + 1);
+			return element;
+		}
+	}
+
+	@Override
+	public void addToDomain(Object anObject) {
+		throw new UnsupportedOperationException("A mapped relation cannot be modified");
+	}
+
+	@Override
+	public void removeFromDomain(Object anObject) {
+		throw new UnsupportedOperationException("A mapped relation cannot be modified");
+	}
+
+	@Override
+	public void addRelation(Object key, Object value) {
+		throw new UnsupportedOperationException("A mapped relation cannot be modified");
+	}
+
+	@Override
+	public void removeRelation(Object key, Object value) {
+		throw new UnsupportedOperationException("A mapped relation cannot be modified");
+	}
+
+	@Override
+	public Set<Object> getDomain() {
+		return domain;
+	}
+
+	/**
+	 * returns a read-only view of the image of domainElement, or null if it is not
+	 * in the domain
+	 */
+	@Override
+	public Set<Object> getImage(Object domainElement) {
+		int objectId = objects.idOf(domainElement);
+		if (objectId < 0)
+			return null;
+		return new ImageView(objectId);
+	}
+
+	/**
+	 * returns the preimage of anImage, found by testing its bit in every row
+	 */
+	@Override
+	public Set<Object> getPreimage(Object anImage) {
+		int attributeId = attributes.idOf(anImage);
+		if (attributeId < 0)
+			return Collections.emptySet();
+		BitSet preimage = new BitSet(objectCount);
+		for (int objectId = 0; objectId < objectCount; objectId++) {
+			if (contains(objectId, attributeId))
+				preimage.set(objectId);
+		}
+		return new BitSetView(objects, preimage);
+	}
+
+	@Override
+	public boolean domainContains(Object anObject) {
+		return objects.idOf(anObject) >= 0;
+	}
+
+	@Override
+	public boolean containsRelation(Object key, Object value) {
+		int objectId = objects.idOf(key);
+		int attributeId = attributes.idOf(value);
+		return objectId >= 0 && attributeId >= 0 && contains(objectId, attributeId);
+	}
+
+	@Override
+	public Set<Object> getAllImages() {
+		return allImages;
+	}
+
+	@Override
+	public String printString() {
+		return RelationPrinter.printString(this, String::valueOf, String::valueOf);
+	}
+}
@@ -19,6 +19,11 @@ public final class MethodEntry {
 	 */
 	public Set<IMethod> allImplementations;
 
+	/**
+	 * the rank of method, when the implementations are added with a rank
+	 */
+	private long methodRank = Long.MAX_VALUE;
+
 	public MethodEntry() {
 		allImplementations = new HashSet<IMethod>();
 	}
@@ -28,7 +33,7 @@ public final class MethodEntry {
 		addImplementation(aMethod);
 	}
 
-	public void addImplementation(IMethod anImplementation) {
+	public synchronized void addImplementation(IMethod anImplementation) {
 		if (anImplementation == null)
 			return;
 
@@ -39,4 +44,24 @@ public final class MethodEntry {
 		// add it to the set of all implementations
 		allImplementations.add(anImplementation);
 	}
+
+	/**
+	 * adds an implementation, which becomes the reference point if its rank is the
+	 * lowest so far. The reference point thus does not depend on the order in which
+	 * the implementations are added, e.g. by several threads
+	 * 
+	 * @param anImplementation
+	 * @param rank
+	 */
+	public synchronized void addImplementation(IMethod anImplementation, long rank) {
+		if (anImplementation == null)
+			return;
+
+		if (method == null || rank < methodRank) {
+			method = anImplementation;
+			methodRank = rank;
+		}
+
+		allImplementations.add(anImplementation);
+	}
 }
@@ -3,8 +3,6 @@ package glass.lattice.model.impl;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Set;
-import java.util.SortedSet;
-import java.util.TreeSet;
 
 import glass.lattice.model.IRelation;
 
@@ -18,8 +16,15 @@ public class Relation implements IRelation{
 	 */
 	private HashMap<Object, Set<Object>> relationStore;
 
+	/**
+	 * the reverse index: for each image, the domain elements that have it. It
+	 * is kept in line with relationStore by the methods that change the relation
+	 */
+	private HashMap<Object, Set<Object>> preimageStore;
+
 	public Relation() {
 		relationStore = new HashMap<Object, Set<Object>>();
+		preimageStore = new HashMap<Object, Set<Object>>();
 	}
 
 	@Override
@@ -35,6 +40,10 @@ public class Relation implements IRelation{
 	@Override
 	public void removeFromDomain(Object anObject) {
 		if (relationStore.containsKey(anObject)) {
+			// first, unindex its images
+			for (Object image : relationStore.get(anObject)) {
+				unindex(anObject, image);
+			}
 			relationStore.remove(anObject);
 		}
 
@@ -49,7 +58,14 @@ public class Relation implements IRelation{
 		} else {
 			image = relationStore.get(key);
 		}
-		image.add(value);
+		if (image.add(value)) {
+			Set<Object> preimage = preimageStore.get(value);
+			if (preimage == null) {
+				preimage = new HashSet<Object>();
+				preimageStore.put(value, preimage);
+			}
+			preimage.add(key);
+		}
 	}
 
 	@Override
@@ -59,10 +75,24 @@ public class Relation implements IRelation{
 			// actual image set
 			Set<Object> image = relationStore.get(key);
 			image.remove(value);
+			unindex(key, value);
 		}
 
 	}
 
+	/**
+	 * removes key from the preimage of value, and drops the preimage if it is
+	 * left empty
+	 * @param key
+	 * @param value
+	 */
+	private void unindex(Object key, Object value) {
+		Set<Object> preimage = preimageStore.get(value);
+		preimage.remove(key);
+		if (preimage.isEmpty())
+			preimageStore.remove(value);
+	}
+
 	@Override
 	public Set<Object> getDomain() {
 		return relationStore.keySet();
@@ -75,6 +105,15 @@ public class Relation implements IRelation{
 		return image;
 	}
 
+	@Override
+	public Set<Object> getPreimage(Object anImage) {
+		Set<Object> preimage = new HashSet<Object>();
+		Set<Object> storedPreimage = preimageStore.get(anImage);
+		if (storedPreimage != null)
+			preimage.addAll(storedPreimage);
+		return preimage;
+	}
+
 	@Override
 	public boolean domainContains(Object anObject) {
 		return relationStore.containsKey(anObject);
@@ -92,46 +131,27 @@ public class Relation implements IRelation{
 
 	@Override
 	/**
-	 * here we code it in the general case by doing the union of all images. In
-	 * special cases, we use custom code that optimizes
+	 * the reverse index holds exactly the images in use, so there is no need to
+	 * do the union of all images
 	 */
 	public Set<Object> getAllImages() {
-		Set<Object> allImages = new HashSet<Object>();
-		for (Object domainElement : getDomain()) {
-			allImages.addAll(getImage(domainElement));
-		}
-		return allImages;
+		// the images that have a preimage are exactly those in use
+		return new HashSet<Object>(preimageStore.keySet());
+	}
+
+	/**
+	 * returns an immutable snapshot of the relation, whose images can be read
+	 * without being copied. Later changes to the relation do not show in the
+	 * snapshot
+	 * @return
+	 */
+	public CompressedRelation freeze() {
+		return new CompressedRelation(relationStore);
 	}
 
 	@Override
 	public String printString() {
-		StringBuffer buffer = new StringBuffer();
-		// print the images by sorted key values
-		HashMap<String, Object> keyMap = new HashMap<String, Object>();
-		SortedSet<String> sortedKeys = new TreeSet<String>();
-		for (Object key : getDomain()) {
-			String keyString = printDomainObject(key);
-			sortedKeys.add(keyString);
-			keyMap.put(keyString, key);
-		}
-
-		//
-		for (String keyString : sortedKeys) {
-			Object key = keyMap.get(keyString);
-			// print the image of key
-			// -> first the key
-			buffer.append(keyString + " =====> [");
-			// then the image of the current element
-			Set<Object> image = getImage(key);
-			for (Object obj : image) {
-				buffer.append(" " + printImageObject(obj) + ",");
-			}
-			// remove the last character which is the extraneous ","
-			buffer.deleteCharAt(buffer.length() - 1);
-			buffer.append(" ]\n");
-		}
-		
-		return buffer.toString();
+		return RelationPrinter.printString(this, this::printDomainObject, this::printImageObject);
 	}
 
 	/**
@@ -0,0 +1,498 @@
+package glass.lattice.model.impl;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+import glass.ast.IMethod;
+import glass.ast.IType;
+import glass.lattice.model.IRelation;
+
+/**
+ * Saves relations (formal contexts) to files, and loads them back, so that the
+ * lattice stages can be re-run without parsing the project again. Three formats
+ * are supported:
+ *
+ * - a compact binary format: a header, the table of the names of the domain
+ * elements, the table of the names of the images, and then, for each domain
+ * element, the ids of its images, as sorted, delta-encoded variable-length ints;
+ *
+ * - the Burmeister <code>.cxt</code> text format, read and written by most other
+ * FCA tools;
+ *
+ * - a random-access format, whose rows are read from a memory-mapped file by
+ * <code>MappedRelation</code>, for the relations that are too big for the heap.
+ *
+ * Only the names of the elements are saved: types by their fully qualified name,
+ * methods by their signature, other elements by <code>toString()</code>, unless
+ * other naming functions are given. A loaded relation thus relates names (Strings)
+ * rather than the elements of a project. The names of the domain elements, and
+ * those of the images, must be distinct. The attributes of a <code>.cxt</code>
+ * file that no object has are not kept, as a relation has no place for them.
+ */
+public final class RelationIO {
+
+	/**
+	 * "GLCX", the first bytes of a binary relation
+	 */
+	private static final int MAGIC = 0x474C4358;
+
+	private static final int VERSION = 1;
+
+	/**
+	 * "GLCM", the first bytes of a relation in the random-access format
+	 */
+	static final int MAPPED_MAGIC = 0x474C434D;
+
+	static final int MAPPED_VERSION = 1;
+
+	/**
+	 * the size of the header of the random-access format
+	 */
+	static final int MAPPED_HEADER_SIZE = 32;
+
+	private RelationIO() {
+	}
+
+	/**
+	 * returns the name under which anElement is saved
+	 * @param anElement
+	 * @return
+	 */
+	public static String nameOf(Object anElement) {
+		if (anElement instanceof IType)
+			return ((IType) anElement).getFullyQualifiedName();
+		if (anElement instanceof IMethod)
+			return ((IMethod) anElement).getSignature();
+		return String.valueOf(anElement);
+	}
+
+	/**
+	 * saves relation to file, in the Burmeister format if the name of file ends
+	 * with .cxt, in the binary format otherwise
+	 * @param relation
+	 * @param file
+	 * @throws IOException
+	 */
+	public static void save(IRelation relation, Path file) throws IOException {
+		if (isBurmeister(file)) {
+			try (Writer writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+				writeBurmeister(relation, writer);
+			}
+		} else {
+			try (OutputStream output = Files.newOutputStream(file)) {
+				writeBinary(relation, output);
+			}
+		}
+	}
+
+	/**
+	 * loads a relation saved by <code>save(...)</code>, or by another FCA tool if
+	 * the name of file ends with .cxt
+	 * @param file
+	 * @return
+	 * @throws IOException
+	 */
+	public static IRelation load(Path file) throws IOException {
+		if (isBurmeister(file)) {
+			try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+				return readBurmeister(reader);
+			}
+		}
+		try (InputStream input = Files.newInputStream(file)) {
+			return readBinary(input);
+		}
+	}
+
+	public static void writeBinary(IRelation relation, OutputStream output) throws IOException {
+		writeBinary(relation, RelationIO::nameOf, RelationIO::nameOf, output);
+	}
+
+	/**
+	 * writes relation in the binary format. The output is buffered, and flushed but
+	 * not closed
+	 * @param relation
+	 * @param objectName the name of a domain element
+	 * @param attributeName the name of an image
+	 * @param output
+	 * @throws IOException
+	 */
+	public static void writeBinary(IRelation relation, Function<Object, String> objectName,
+			Function<Object, String> attributeName, OutputStream output) throws IOException {
+		Table objects = new Table(relation.getDomain(), objectName);
+		Table attributes = new Table(relation.getAllImages(), attributeName);
+
+		DataOutputStream data = new DataOutputStream(new BufferedOutputStream(output));
+		data.writeInt(MAGIC);
+		writeVarInt(data, VERSION);
+
+		// 1. the string tables
+		objects.writeNames(data);
+		attributes.writeNames(data);
+
+		// 2. the rows, as gaps between sorted attribute ids
+		for (int objectId = 0; objectId < objects.size(); objectId++) {
+			int[] row = attributes.idsOf(relation.getImage(objects.get(objectId)));
+			writeVarInt(data, row.length);
+			int previous = -1;
+			for (int attributeId : row) {
+				writeVarInt(data, attributeId - previous - 1);
+				previous = attributeId;
+			}
+		}
+		data.flush();
+	}
+
+	/**
+	 * reads a relation written by <code>writeBinary(...)</code>. The input is not
+	 * closed
+	 * @param input
+	 * @return a relation between the names of the domain elements and the names of
+	 *         the images
+	 * @throws IOException if the input is not a relation in the binary format
+	 */
+	public static IRelation readBinary(InputStream input) throws IOException {
+		DataInputStream data = new DataInputStream(new BufferedInputStream(input));
+		if (data.readInt() != MAGIC)
+			throw new IOException("Not a binary relation");
+		int version = readVarInt(data);
+		if (version != VERSION)
+			throw new IOException("Unsupported binary relation version: " + version);
+
+		String[] objects = readNames(data);
+		String[] attributes = readNames(data);
+
+		IRelation relation = new Relation();
+		for (String object : objects) {
+			relation.addToDomain(object);
+			int rowLength = readVarInt(data);
+			int attributeId = -1;
+			for (int i = 0; i < rowLength; i++) {
+				attributeId += readVarInt(data) + 1;
+				if (attributeId >= attributes.length)
+					throw new IOException("Image id out of range: " + attributeId);
+				relation.addRelation(object, attributes[attributeId]);
+			}
+		}
+		return relation;
+	}
+
+	public static void writeMapped(IRelation relation, Path file) throws IOException {
+		writeMapped(relation, RelationIO::nameOf, RelationIO::nameOf, file);
+	}
+
+	/**
+	 * writes relation to file in the random-access format read by
+	 * <code>MappedRelation</code>: a header (magic, version, number of objects,
+	 * number of attributes, offset of the names, offset of the rows), the row index
+	 * (the offset of each row, and the end of the last one), the rows, as the words
+	 * of their bit vectors, without the trailing zero words, and then the names of the
+	 * objects and of the attributes. All the offsets and words are 8-byte aligned
+	 * @param relation
+	 * @param objectName the name of a domain element
+	 * @param attributeName the name of an image
+	 * @param file
+	 * @throws IOException
+	 */
+	public static void writeMapped(IRelation relation, Function<Object, String> objectName,
+			Function<Object, String> attributeName, Path file) throws IOException {
+		Table objects = new Table(relation.getDomain(), objectName);
+		Table attributes = new Table(relation.getAllImages(), attributeName);
+
+		// 1. the length of each row, in words, to lay out the row index
+		int[] rowWords = new int[objects.size()];
+		for (int objectId = 0; objectId < objects.size(); objectId++) {
+			int[] row = attributes.idsOf(relation.getImage(objects.get(objectId)));
+			rowWords[objectId] = row.length == 0 ? 0 : (row[row.length - 1] >>> 6) + 1;
+		}
+		long rowsOffset = MAPPED_HEADER_SIZE + 8L * (objects.size() + 1);
+		long namesOffset = rowsOffset;
+		for (int words : rowWords) {
+			namesOffset += 8L * words;
+		}
+
+		try (DataOutputStream data = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file)))) {
+			// 2. the header and the row index
+			data.writeInt(MAPPED_MAGIC);
+			data.writeInt(MAPPED_VERSION);
+			data.writeInt(objects.size());
+			data.writeInt(attributes.size());
+			data.writeLong(namesOffset);
+			data.writeLong(rowsOffset);
+			long offset = rowsOffset;
+			for (int words : rowWords) {
+				data.writeLong(offset);
+				offset += 8L * words;
+			}
+			data.writeLong(offset);
+
+			// 3. the rows
+			for (int objectId = 0; objectId < objects.size(); objectId++) {
+				long[] words = new long[rowWords[objectId]];
+				for (int attributeId : attributes.idsOf(relation.getImage(objects.get(objectId)))) {
+					words[attributeId >>> 6] |= 1L << attributeId;
+				}
+				for (long word : words) {
+					data.writeLong(word);
+				}
+			}
+
+			// 4. the names
+			objects.writeNames(data);
+			attributes.writeNames(data);
+		}
+	}
+
+	public static void writeBurmeister(IRelation relation, Writer writer) throws IOException {
+		writeBurmeister(relation, RelationIO::nameOf, RelationIO::nameOf, writer);
+	}
+
+	/**
+	 * writes relation in the Burmeister format: "B", an empty context name, the
+	 * numbers of objects and attributes, their names, one per line, and then one
+	 * line of 'X' and '.' per object. The writer is flushed but not closed
+	 * @param relation
+	 * @param objectName the name of a domain element
+	 * @param attributeName the name of an image
+	 * @param writer
+	 * @throws IOException
+	 */
+	public static void writeBurmeister(IRelation relation, Function<Object, String> objectName,
+			Function<Object, String> attributeName, Writer writer) throws IOException {
+		Table objects = new Table(relation.getDomain(), objectName);
+		Table attributes = new Table(relation.getAllImages(), attributeName);
+
+		BufferedWriter out = new BufferedWriter(writer);
+		out.write("B\n\n" + objects.size() + "\n" + attributes.size() + "\n\n");
+		for (int objectId = 0; objectId < objects.size(); objectId++) {
+			out.write(singleLine(objects.nameOf(objectId)));
+			out.write('\n');
+		}
+		for (int attributeId = 0; attributeId < attributes.size(); attributeId++) {
+			out.write(singleLine(attributes.nameOf(attributeId)));
+			out.write('\n');
+		}
+		char[] row = new char[attributes.size()];
+		for (int objectId = 0; objectId < objects.size(); objectId++) {
+			Arrays.fill(row, '.');
+			for (int attributeId : attributes.idsOf(relation.getImage(objects.get(objectId)))) {
+				row[attributeId] = 'X';
+			}
+			out.write(row);
+			out.write('\n');
+		}
+		out.flush();
+	}
+
+	/**
+	 * reads a relation in the Burmeister format. The reader is not closed
+	 * @param reader
+	 * @return a relation between the names of the objects and the names of the
+	 *         attributes
+	 * @throws IOException if the input is not a well-formed Burmeister context
+	 */
+	public static IRelation readBurmeister(Reader reader) throws IOException {
+		BufferedReader in = new BufferedReader(reader);
+		if (!"B".equals(trimmed(in.readLine())))
+			throw new IOException("Not a Burmeister context: missing B header");
+
+		// 1. the header. The context name is optional, and may be empty
+		String line = nextNonEmptyLine(in);
+		if (!isNumber(line))
+			line = nextNonEmptyLine(in);
+		int objectCount = parseCount(line);
+		int attributeCount = parseCount(nextNonEmptyLine(in));
+
+		// 2. the names. Blank lines may separate them from the header
+		String[] objects = new String[objectCount];
+		String[] attributes = new String[attributeCount];
+		line = objectCount + attributeCount > 0 ? nextNonEmptyLine(in) : null;
+		for (int i = 0; i < objectCount + attributeCount; i++) {
+			if (i > 0)
+				line = in.readLine();
+			if (line == null)
+				throw new EOFException("Missing object or attribute names");
+			if (i < objectCount)
+				objects[i] = trimmed(line);
+			else
+				attributes[i - objectCount] = trimmed(line);
+		}
+
+		// 3. the incidence rows
+		IRelation relation = new Relation();
+		for (int i = 0; i < objectCount; i++) {
+			String row = trimmed(in.readLine());
+			if (row == null)
+				throw new EOFException("Missing row of object " + objects[i]);
+			if (row.length() != attributeCount)
+				throw new IOException("Row of object " + objects[i] + " has " + row.length()
+						+ " columns instead of " + attributeCount);
+			relation.addToDomain(objects[i]);
+			for (int j = 0; j < attributeCount; j++) {
+				char incidence = row.charAt(j);
+				if (incidence == 'X' || incidence == 'x')
+					relation.addRelation(objects[i], attributes[j]);
+				else if (incidence != '.')
+					throw new IOException("Unexpected character '" + incidence + "' in row of object " + objects[i]);
+			}
+		}
+		return relation;
+	}
+
+	/**
+	 * the elements of a relation, sorted by name so that the saved files do not
+	 * depend on the iteration order of the relation, and their ids
+	 */
+	private static class Table {
+
+		private Object[] elements;
+
+		private String[] names;
+
+		private Map<Object, Integer> ids;
+
+		Table(Set<Object> someElements, Function<Object, String> elementName) {
+			List<Object> sorted = new ArrayList<Object>(someElements);
+			Map<Object, String> elementNames = new HashMap<Object, String>();
+			for (Object element : sorted) {
+				elementNames.put(element, elementName.apply(element));
+			}
+			sorted.sort((left, right) -> elementNames.get(left).compareTo(elementNames.get(right)));
+
+			elements = sorted.toArray();
+			names = new String[elements.length];
+			ids = new HashMap<Object, Integer>();
+			for (int id = 0; id < elements.length; id++) {
+				names[id] = elementNames.get(elements[id]);
+				if (id > 0 && names[id].equals(names[id - 1]))
+					throw new IllegalArgumentException("Two elements are named " + names[id]);
+				ids.put(elements[id], id);
+			}
+		}
+
+		int size() {
+			return elements.length;
+		}
+
+		Object get(int id) {
+			return elements[id];
+		}
+
+		String nameOf(int id) {
+			return names[id];
+		}
+
+		int[] idsOf(Set<Object> someElements) {
+			BitSet encoded = new BitSet(elements.length);
+			for (Object element : someElements) {
+				encoded.set(ids.get(element));
+			}
+			return encoded.stream().toArray();
+		}
+
+		void writeNames(DataOutputStream data) throws IOException {
+			writeVarInt(data, names.length);
+			for (String name : names) {
+				byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+				writeVarInt(data, bytes.length);
+				data.write(bytes);
+			}
+		}
+	}
+
+	static String[] readNames(DataInputStream data) throws IOException {
+		String[] names = new String[readVarInt(data)];
+		for (int i = 0; i < names.length; i++) {
+			byte[] bytes = new byte[readVarInt(data)];
+			data.readFully(bytes);
+			names[i] = new String(bytes, StandardCharsets.UTF_8);
+		}
+		return names;
+	}
+
+	/**
+	 * writes a non-negative int on 1 to 5 bytes, 7 bits at a time, low bits first
+	 */
+	private static void writeVarInt(DataOutputStream data, int value) throws IOException {
+		while ((value & ~0x7F) != 0) {
+			data.writeByte((value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		data.writeByte(value);
+	}
+
+	static int readVarInt(DataInputStream data) throws IOException {
+		int value = 0;
+		for (int shift = 0; shift < 35; shift += 7) {
+			int b = data.readUnsignedByte();
+			value |= (b & 0x7F) << shift;
+			if ((b & 0x80) == 0) {
+				if (value < 0)
+					throw new IOException("Negative length or id in binary relation");
+				return value;
+			}
+		}
+		throw new IOException("Malformed int in binary relation");
+	}
+
+	private static boolean isBurmeister(Path file) {
+		return file.getFileName() != null && file.getFileName().toString().toLowerCase().endsWith(".cxt");
+	}
+
+	private static String nextNonEmptyLine(BufferedReader in) throws IOException {
+		String line;
+		do {
+			line = in.readLine();
+			if (line == null)
+				throw new EOFException("Truncated Burmeister header");
+		} while (line.trim().isEmpty());
+		return line.trim();
+	}
+
+	private static boolean isNumber(String line) {
+		return !line.isEmpty() && line.chars().allMatch(Character::isDigit);
+	}
+
+	private static int parseCount(String line) throws IOException {
+		if (!isNumber(line))
+			throw new IOException("Expected a number of objects or attributes, found " + line);
+		return Integer.parseInt(line);
+	}
+
+	/**
+	 * a line without its trailing carriage return, if any (files written on
+	 * Windows)
+	 */
+	private static String trimmed(String line) {
+		if (line != null && line.endsWith("\r"))
+			return line.substring(0, line.length() - 1);
+		return line;
+	}
+
+	/**
+	 * the Burmeister format has one name per line
+	 */
+	private static String singleLine(String name) {
+		return name.replace('\n', ' ').replace('\r', ' ');
+	}
+}
@@ -0,0 +1,54 @@
+package glass.lattice.model.impl;
+
+import java.util.HashMap;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.function.Function;
+
+import glass.lattice.model.IRelation;
+
+/**
+ * The <code>printString()</code> of the relations: one line per domain element,
+ * sorted by name, followed by its image.
+ */
+final class RelationPrinter {
+
+	private RelationPrinter() {
+	}
+
+	/**
+	 * prints relation as "element =====> [ image1, image2 ]" lines
+	 * @param relation
+	 * @param domainName the printed name of a domain element
+	 * @param imageName the printed name of an image
+	 * @return
+	 */
+	static String printString(IRelation relation, Function<Object, String> domainName,
+			Function<Object, String> imageName) {
+		StringBuffer buffer = new StringBuffer();
+		// print the images by sorted key values
+		HashMap<String, Object> keyMap = new HashMap<String, Object>();
+		SortedSet<String> sortedKeys = new TreeSet<String>();
+		for (Object key : relation.getDomain()) {
+			String keyString = domainName.apply(key);
+			sortedKeys.add(keyString);
+			keyMap.put(keyString, key);
+		}
+
+		for (String keyString : sortedKeys) {
+			// -> first the key, then its image
+			buffer.append(keyString + " =====> [");
+			boolean isEmpty = true;
+			for (Object obj : relation.getImage(keyMap.get(keyString))) {
+				buffer.append(" " + imageName.apply(obj) + ",");
+				isEmpty = false;
+			}
+			// remove the extraneous "," after the last image, if there is one
+			if (!isEmpty)
+				buffer.deleteCharAt(buffer.length() - 1);
+			buffer.append(" ]\n");
+		}
+
+		return buffer.toString();
+	}
+}
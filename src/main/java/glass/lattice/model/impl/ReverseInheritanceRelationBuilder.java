@@ -2,15 +2,25 @@ package glass.lattice.model.impl;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
 
 import glass.ast.IMethod;
 import glass.ast.IProject;
 import glass.ast.IType;
+import glass.ast.SignatureTable;
+import glass.ast.TypeHierarchyIndex;
 import glass.lattice.model.IRelation;
 import glass.lattice.model.IRelationBuilder;
 
@@ -18,6 +28,13 @@ public class ReverseInheritanceRelationBuilder implements IRelationBuilder{
 	
 	private IProject sourceProject;
 
+	/**
+	 * the pool computing the local domain interfaces of the types, and registering
+	 * their methods, in parallel. It is only used for the projects whose types can
+	 * be queried from several threads (see <code>IProject.isThreadSafe()</code>)
+	 */
+	private ForkJoinPool pool;
+
 	
 	/**
 	 * variable to store the local domain interfaces of the defined types of 
@@ -34,11 +51,65 @@ public class ReverseInheritanceRelationBuilder implements IRelationBuilder{
 	HashMap<IType, IMethod[]> subhierarchyDomainInterfaces = null;
 	
 	private Collection<IType> definedTypes = null;
+
+	/**
+	 * the hierarchy of the defined types, queried once per relation
+	 */
+	private TypeHierarchyIndex typeHierarchy = null;
+
+	/**
+	 * the signatures of the methods of the ancestors outside of the project,
+	 * shared by all the types of the project
+	 */
+	private ExternalSignatureCache externalSignatures = new ExternalSignatureCache();
 	
-	private HashMap<String, MethodEntry> methodImplementations = new HashMap<String, MethodEntry>();
+	/**
+	 * the implementations of each method, keyed by signature id
+	 */
+	private Map<Integer, MethodEntry> methodImplementations = new ConcurrentHashMap<Integer, MethodEntry>();
+
+	/**
+	 * the derivation operators of the relation built from the cumulative domain
+	 * interfaces, created on first use
+	 */
+	private ClosureOperator closureOperator = null;
 	
 
+	/**
+	 * a builder running on the common fork-join pool
+	 */
+	public ReverseInheritanceRelationBuilder() {
+		this(ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * @param pool the pool computing the domain interfaces of the types
+	 */
+	public ReverseInheritanceRelationBuilder(ForkJoinPool pool) {
+		this.pool = pool;
+	}
+
+	/**
+	 * returns the implementations of each method, keyed by signature. This is a
+	 * copy: changing it does not change the builder
+	 * 
+	 * @return
+	 */
 	public HashMap<String, MethodEntry> getMethodImplementations() {
+		HashMap<String, MethodEntry> bySignature = new HashMap<String, MethodEntry>();
+		for (Map.Entry<Integer, MethodEntry> entry : methodImplementations.entrySet()) {
+			bySignature.put(SignatureTable.getShared().signatureOf(entry.getKey()), entry.getValue());
+		}
+		return bySignature;
+	}
+
+	/**
+	 * returns the implementations of each method, keyed by signature id (see
+	 * <code>SignatureTable</code>)
+	 * 
+	 * @return
+	 */
+	public Map<Integer, MethodEntry> getMethodImplementationsById() {
 		return methodImplementations;
 	}
 
@@ -60,8 +131,46 @@ public class ReverseInheritanceRelationBuilder implements IRelationBuilder{
 
 	public void setSubhierarchyDomainInterfaces(HashMap<IType, IMethod[]> subhierarchyDomainInterfaces) {
 		this.subhierarchyDomainInterfaces = subhierarchyDomainInterfaces;
+		closureOperator = null;
+		// a hierarchy built from the previous domain interfaces is stale
+		if (definedTypes == null)
+			typeHierarchy = null;
+	}
+
+	/**
+	 * returns the closure operator of the relation (type -> cumulative domain
+	 * interface), or null if the relation has not been built yet. It is shared by
+	 * the visitors, so that the intersections of cumulative domain interfaces they
+	 * need are computed on bit vectors, and cached
+	 * 
+	 * @return
+	 */
+	public ClosureOperator getClosureOperator() {
+		if (closureOperator == null && subhierarchyDomainInterfaces != null)
+			closureOperator = new ClosureOperator(buildImagesFrom(subhierarchyDomainInterfaces));
+		return closureOperator;
 	}
 	
+	/**
+	 * returns the hierarchy of the defined types. If the relation was not built
+	 * from a project, but its domain interfaces were set, it is built on first use
+	 * from the types of the subhierarchy domain interfaces
+	 * 
+	 * @return
+	 */
+	public TypeHierarchyIndex getTypeHierarchy() {
+		if (typeHierarchy == null) {
+			Collection<IType> types = getDefinedTypes();
+			if (types == null && subhierarchyDomainInterfaces != null)
+				types = subhierarchyDomainInterfaces.keySet();
+			if (types == null)
+				throw new IllegalStateException(
+						"No type hierarchy: the relation has not been built from a project (see buildRelationFrom)");
+			typeHierarchy = new TypeHierarchyIndex(types);
+		}
+		return typeHierarchy;
+	}
+
 	public IProject getProcessedProject() {
 		return sourceProject;
 	}
@@ -76,10 +185,10 @@ public class ReverseInheritanceRelationBuilder implements IRelationBuilder{
 		HashSet<Object> allMethods = new HashSet<Object>();
 
 		// iterate over the methods in methodImplementations
-		for (String methodSignature : methodImplementations.keySet()) {
+		for (MethodEntry entry : methodImplementations.values()) {
 			// for each signature, use the header method (public field method of
 			// class MethodEntry)
-			allMethods.add(methodImplementations.get(methodSignature).method);
+			allMethods.add(entry.method);
 		}
 		return allMethods;
 	}
@@ -91,17 +200,26 @@ public class ReverseInheritanceRelationBuilder implements IRelationBuilder{
 
 		definedTypes = sourceProject.getDefinedTypes();
 
-		HashMap<IType, IMethod[]> unpurgedDomainInterfaces = new HashMap<IType, IMethod[]>(),
+		typeHierarchy = new TypeHierarchyIndex(definedTypes);
+
+		HashMap<IType, IMethod[]> unpurgedDomainInterfaces = new LinkedHashMap<IType, IMethod[]>(),
 				purgedDomainInterfaces = new HashMap<IType, IMethod[]>();
 
-		// compute the domain
+		// compute the domain. The local domain interfaces of the types do not depend
+		// on one another, so they are computed in parallel when the project allows
+		// it (see forEachType), and then stored in the order of definedTypes. The
+		// project types are looked up in a set, rather than in definedTypes itself
 		boolean excludeAccessors = false;
-		for (IType type : definedTypes) {
-			IMethod[] typeLocalDomainInterface = localDomainInterface(definedTypes, type, excludeAccessors);
-			if (typeLocalDomainInterface == null) {
-				System.out.println("Type " + type + " has null domain interface");
+		List<IType> types = new ArrayList<IType>(definedTypes);
+		Set<IType> projectTypes = new HashSet<IType>(definedTypes);
+		IMethod[][] localInterfaces = new IMethod[types.size()][];
+		forEachType(types.size(),
+				i -> localInterfaces[i] = localDomainInterface(projectTypes, types.get(i), excludeAccessors));
+		for (int i = 0; i < types.size(); i++) {
+			if (localInterfaces[i] == null) {
+				System.out.println("Type " + types.get(i) + " has null domain interface");
 			}
-			unpurgedDomainInterfaces.put(type, typeLocalDomainInterface);
+			unpurgedDomainInterfaces.put(types.get(i), localInterfaces[i]);
 		}
 
 		// purge domainInterfaces by reducing references to different
@@ -123,52 +241,89 @@ public class ReverseInheritanceRelationBuilder implements IRelationBuilder{
 	}
 
 	/**
+	 * computes the cumulative domain interface of each type, i.e. the union of its
+	 * domain interface with those of all its subtypes.
+	 * 
+	 * The types are processed in reverse topological order (subtypes first), so
+	 * that the cumulative interface of a type is its own interface plus the
+	 * cumulative interfaces of its direct subtypes, which are already computed. The
+	 * interfaces are unioned as bit vectors over method ids.
 	 * 
 	 * @param domainInterfaces
-	 * @param jProject
 	 * @return
 	 */
 	protected HashMap<IType, IMethod[]> cumulativeDomainInterfaces(HashMap<IType, IMethod[]> domainInterfaces) {
-		HashMap<IType, IMethod[]> cumulativeDomainInterfaces = new HashMap<IType, IMethod[]>();
-
-		// use a set so that duplicates are counted only once
-		Set<IMethod> cumulativeInterface = null;
+		HashMap<IType, IMethod[]> cumulativeDomainInterfaces = new LinkedHashMap<IType, IMethod[]>();
+
+		// the hierarchy of the types of domainInterfaces: the one of the project,
+		// unless some of the types are not defined in it
+		TypeHierarchyIndex hierarchy = typeHierarchy;
+		if (hierarchy == null || !definesAll(hierarchy, domainInterfaces.keySet()))
+			hierarchy = new TypeHierarchyIndex(domainInterfaces.keySet());
+
+		// walk the types from the leaves up. Notice that if a type is an interface,
+		// its implementing classes are part of its subtypes, including the anonymous
+		// classes. However, the anonymous classes are not considered as DEFINED in the
+		// compilation unit, and thus, are neither in the order nor have a domain
+		// interface associated with them
+		ElementIndex methodIds = new ElementIndex();
+		BitSet[] cumulativeMethods = new BitSet[hierarchy.definedTypeCount()];
+		int[] order = hierarchy.topologicalOrder();
+		for (int i = order.length - 1; i >= 0; i--) {
+			int typeId = order[i];
+
+			// first, the type's interface
+			IMethod[] domainInterface = domainInterfaces.get(hierarchy.get(typeId));
+			BitSet cumulative = domainInterface == null ? new BitSet()
+					: methodIds.encode(Arrays.asList(domainInterface));
+
+			// next, the cumulative interfaces of its direct subtypes, which cover
+			// those of all its subtypes
+			BitSet directSubtypes = hierarchy.directSubtypes(typeId);
+			for (int subtypeId = directSubtypes.nextSetBit(0); subtypeId >= 0; subtypeId = directSubtypes
+					.nextSetBit(subtypeId + 1)) {
+				cumulative.or(cumulativeMethods[subtypeId]);
+			}
+			cumulativeMethods[typeId] = cumulative;
+		}
 
-		// iterate over types
+		// now, create an array of IMethod for each type, in the order of
+		// domainInterfaces
 		for (IType type : domainInterfaces.keySet()) {
-			cumulativeInterface = new HashSet<IMethod>();
-
-			// first, add the type's interface
-			cumulativeInterface.addAll(Arrays.asList(domainInterfaces.get(type)));
-
-			// next, get all the subtypes of type, and add their interfaces,
-			// as well.
-
-			// get all the subtypes
-			IType[] subtypes = type.getAllSubtypes();
-
-			// now, add the domain interfaces of the subtypes
-			for (IType subtype : subtypes) {
-				// notice that if type is an interface, its implementing
-				// classes will be considered as part of its subtypes,
-				// including the anonymous classes. However, the anonymous classes
-				// are not considered as DEFINED in the compilation unit, and thus, will
-				// not have a domain interface associated with it
-				IMethod[] subtypeDomainInterface = domainInterfaces.get(subtype);
-				if (subtypeDomainInterface != null) {
-					cumulativeInterface.addAll(Arrays.asList(subtypeDomainInterface));
-				}
+			BitSet cumulative = cumulativeMethods[hierarchy.idOf(type)];
+			IMethod[] methods = new IMethod[cumulative.cardinality()];
+			int i = 0;
+			for (int methodId = cumulative.nextSetBit(0); methodId >= 0; methodId = cumulative
+					.nextSetBit(methodId + 1)) {
+				methods[i++] = (IMethod) methodIds.get(methodId);
 			}
+			cumulativeDomainInterfaces.put(type, methods);
+		}
 
-			// now, create an array of IMethod from cumulativeInterface
-			IMethod[] cumulative = cumulativeInterface.toArray(new IMethod[cumulativeInterface.size()]);
+		return cumulativeDomainInterfaces;
+	}
 
-			// now, add the new <key,value> pair in
-			// cumulativeDomainInterfaces
-			cumulativeDomainInterfaces.put(type, cumulative);
+	private static boolean definesAll(TypeHierarchyIndex hierarchy, Collection<IType> types) {
+		for (IType type : types) {
+			if (!hierarchy.isDefined(hierarchy.idOf(type)))
+				return false;
 		}
+		return true;
+	}
 
-		return cumulativeDomainInterfaces;
+	/**
+	 * runs action on the ranks 0 ... count - 1 of the types, in parallel on the pool
+	 * if the processed project can be queried from several threads, and
+	 * sequentially otherwise. The actions must thus not depend on one another
+	 * 
+	 * @param count
+	 * @param action
+	 */
+	private void forEachType(int count, IntConsumer action) {
+		if (sourceProject != null && sourceProject.isThreadSafe())
+			pool.submit(() -> IntStream.range(0, count).parallel().forEach(action)).join();
+		else
+			IntStream.range(0, count).forEach(action);
 	}
 
 	protected IRelation buildImagesFrom(HashMap<IType, IMethod[]> interfaces) {
@@ -191,30 +346,27 @@ public class ReverseInheritanceRelationBuilder implements IRelationBuilder{
 
 	protected HashMap<IType, IMethod[]> purge(HashMap<IType, IMethod[]> unpurgedDomainInterfaces) {
 
-		// the new hashmap
-		HashMap<IType, IMethod[]> purged = new HashMap<IType, IMethod[]>();
+		// the new hashmap, in the order of the types
+		HashMap<IType, IMethod[]> purged = new LinkedHashMap<IType, IMethod[]>();
 
 		// the types (keys)
-		Set<IType> types = unpurgedDomainInterfaces.keySet();
+		List<IType> types = new ArrayList<IType>(unpurgedDomainInterfaces.keySet());
 
 
 		// first build the dictionary of method implementations for all
-		// types
-		for (IType type : types) {
-			IMethod[] domainInterface = unpurgedDomainInterfaces.get(type);
+		// types, in parallel when the project allows it. The reference point of
+		// an entry is the implementation that comes first in the order of the
+		// types (and of their domain interfaces), whatever the thread that
+		// registers it
+		forEachType(types.size(), typeRank -> {
+			IMethod[] domainInterface = unpurgedDomainInterfaces.get(types.get(typeRank));
 
 			// iterate over the domain interface and add the methods
-			for (IMethod method : domainInterface) {
-				String key = hashKey(method);
-				MethodEntry entry = methodImplementations.get(key);
-				if (entry == null) {
-					entry = new MethodEntry(method);
-					methodImplementations.put(key, entry);
-				} else {
-					entry.addImplementation(method);
-				}
+			for (int i = 0; i < domainInterface.length; i++) {
+				methodImplementations.computeIfAbsent(hashKeyId(domainInterface[i]), key -> new MethodEntry())
+						.addImplementation(domainInterface[i], ((long) typeRank << 32) | i);
 			}
-		}
+		});
 
 		// then rebuild domain interfaces HashMap by making sure that
 		// different implementations
@@ -227,7 +379,7 @@ public class ReverseInheritanceRelationBuilder implements IRelationBuilder{
 
 			// iterate over the domain interface and add the methods
 			for (int i = 0; i < domainInterface.length; i++) {
-				String key = hashKey(domainInterface[i]);
+				int key = hashKeyId(domainInterface[i]);
 				MethodEntry entry = methodImplementations.get(key);
 				if (entry == null) {
 					System.out.println("Houston: we have a problem");
@@ -255,6 +407,20 @@ public class ReverseInheritanceRelationBuilder implements IRelationBuilder{
 		return method.getSignature();
 	}
 
+	/**
+	 * returns the id of <code>hashKey(method)</code> in the shared
+	 * <code>SignatureTable</code>, which is what the method implementations are
+	 * keyed by. It is the memoised signature id of the method, so that the
+	 * signature is not rebuilt. Subclasses that override hashKey must override
+	 * this method as well, e.g. by interning their key in the shared table
+	 * 
+	 * @param method
+	 * @return
+	 */
+	protected int hashKeyId(IMethod method) {
+		return method.getSignatureId();
+	}
+
 	/**
 	 * this method computes the local domain interface of a type (class or
 	 * interface), i.e. the set of methods supported by the type that are
@@ -287,10 +453,6 @@ public class ReverseInheritanceRelationBuilder implements IRelationBuilder{
 		// in the end, domain methods will be here
 		Collection<IMethod> domainMethods = new ArrayList<IMethod>();
 
-		// external methods are methods that are defined from classes external
-		// to the project
-		Collection<IMethod> externalMethods = new ArrayList<IMethod>();
-
 		// add the methods defined in <code>type</code>
 		if (type == null) {
 			System.out.println("How come type is null?");
@@ -323,7 +485,7 @@ public class ReverseInheritanceRelationBuilder implements IRelationBuilder{
 		// get all the supertypes, both within the project, and outside
 
 		// all ancestors
-		IType[] allAncestors = type.getAllSupertypes();
+		IType[] allAncestors = typeHierarchy != null ? typeHierarchy.getAllSupertypes(type) : type.getAllSupertypes();
 		HashSet<IType> outsideProjectAncestorsSet = (new HashSet<IType>(Arrays.asList(allAncestors))),
 				withinProjectAncestorsSet = (HashSet<IType>) outsideProjectAncestorsSet.clone();
 
@@ -335,25 +497,15 @@ public class ReverseInheritanceRelationBuilder implements IRelationBuilder{
 		// outside :-)
 		withinProjectAncestorsSet.removeAll(outsideProjectAncestorsSet);
 
-		// collect methods defined outside project
-		Iterator<IType> outsideAncestors = outsideProjectAncestorsSet.iterator();
-		while (outsideAncestors.hasNext()) {
-			externalMethods.addAll(Arrays.asList(outsideAncestors.next().getMethods()));
-		}
-
 		// now, we remove from allMethods those methods that are
-		// redefinitions of methods defined outside of the project
+		// redefinitions of methods defined outside of the project. The
+		// signatures of the methods of each outside ancestor are collected
+		// once, and shared by all the types of the project
 		Collection<IMethod> remainingMethods = new ArrayList<IMethod>();
 		Iterator<IMethod> allMethodsIterator = allMethods.iterator();
 		while (allMethodsIterator.hasNext()) {
 			IMethod nextMethod = allMethodsIterator.next();
-			boolean found = false;
-			Iterator<IMethod> externalMethodsIterator = externalMethods.iterator();
-			while (!found && externalMethodsIterator.hasNext()) {
-				IMethod nextExternalMethod = externalMethodsIterator.next();
-				found = nextExternalMethod.isSimilar(nextMethod);
-			}
-			if (!found)
+			if (!externalSignatures.redefinesAny(nextMethod, outsideProjectAncestorsSet))
 				remainingMethods.add(nextMethod);
 
 		}
@@ -1,16 +1,22 @@
 package glass.lattice.model.impl;
 
 import java.util.ArrayList;
-import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import glass.ast.IMethod;
 import glass.ast.IProject;
 import glass.ast.IType;
+import glass.ast.SignatureTable;
+import glass.ast.TypeHierarchyIndex;
 import glass.lattice.model.IRelation;
 import glass.lattice.model.IRelationBuilder;
 
@@ -23,10 +29,30 @@ import glass.lattice.model.IRelationBuilder;
 public class UsualRelationBuilder implements IRelationBuilder{
 
 	private IProject sourceProject;
-	private HashMap<String, MethodEntry> methodImplementations = new HashMap<String, MethodEntry>();
+	private HashMap<Integer, MethodEntry> methodImplementations = new HashMap<Integer, MethodEntry>();
 	private Collection<IType> definedTypes = null;
+	private TypeHierarchyIndex typeHierarchy = null;
+	private ExternalSignatureCache externalSignatures = new ExternalSignatureCache();
 	
+	/**
+	 * returns the implementations of each method, keyed by signature. This is a
+	 * copy: changing it does not change the builder
+	 * @return
+	 */
 	public HashMap<String, MethodEntry> getMethodImplementations() {
+		HashMap<String, MethodEntry> bySignature = new HashMap<String, MethodEntry>();
+		for (Map.Entry<Integer, MethodEntry> entry : methodImplementations.entrySet()) {
+			bySignature.put(SignatureTable.getShared().signatureOf(entry.getKey()), entry.getValue());
+		}
+		return bySignature;
+	}
+
+	/**
+	 * returns the implementations of each method, keyed by signature id (see
+	 * <code>SignatureTable</code>)
+	 * @return
+	 */
+	public HashMap<Integer, MethodEntry> getMethodImplementationsById() {
 		return methodImplementations;
 	}
 	
@@ -34,15 +60,32 @@ public class UsualRelationBuilder implements IRelationBuilder{
 		return definedTypes;
 	}
 	
+	/**
+	 * returns the hierarchy of the defined types, which is indexed when the
+	 * relation is built
+	 * @return
+	 */
+	public TypeHierarchyIndex getTypeHierarchy() {
+		if (typeHierarchy == null)
+			throw new IllegalStateException(
+					"No type hierarchy: the relation has not been built from a project (see buildRelationFrom)");
+		return typeHierarchy;
+	}
+	
 	@Override
 	public IRelation buildRelationFrom(IProject project) {
 		this.sourceProject = project;
 		definedTypes = project.getDefinedTypes();
+		typeHierarchy = new TypeHierarchyIndex(definedTypes);
 		
 		HashMap<IType, IMethod[]> domainInterfaces = new HashMap<IType, IMethod[]>();
 		
+		// the methods accessible from each type, computed top-down
+		List<Map<Integer, IMethod>> accessibleMethods = accessibleMethods();
+		
 		for (IType type : definedTypes) {
-			IMethod[] typeDomainInterface = domainInterface(definedTypes, type);
+			IMethod[] typeDomainInterface = domainInterface(type,
+					accessibleMethods.get(typeHierarchy.idOf(type)).values());
 			this.setReferencePoint(typeDomainInterface);
 			IMethod[] newDomainInterface = this.modifyDomainWithReference(typeDomainInterface);
 			domainInterfaces.put(type, newDomainInterface);
@@ -68,7 +111,7 @@ public class UsualRelationBuilder implements IRelationBuilder{
 	
 	private void setReferencePoint(IMethod[] typeDomainInterface) {
 		for (IMethod method : typeDomainInterface) {
-			String key = method.getSignature();
+			int key = method.getSignatureId();
 			MethodEntry entry = methodImplementations.get(key);
 			if (entry == null) {
 				entry = new MethodEntry(method);
@@ -82,7 +125,7 @@ public class UsualRelationBuilder implements IRelationBuilder{
 	private IMethod[] modifyDomainWithReference(IMethod[] typeDomainInterface) {
 		IMethod[] newDomainInterface = new IMethod[typeDomainInterface.length];
 		for (int i = 0; i<typeDomainInterface.length; i++) {
-			String key = typeDomainInterface[i].getSignature();
+			int key = typeDomainInterface[i].getSignatureId();
 			MethodEntry entry = methodImplementations.get(key);
 			if (entry == null) {
 				System.out.println("Entry null, should not be happening");
@@ -102,15 +145,52 @@ public class UsualRelationBuilder implements IRelationBuilder{
 		HashSet<Object> allMethods = new HashSet<Object>();
 
 		// iterate over the methods in methodImplementations
-		for (String methodSignature : methodImplementations.keySet()) {
+		for (MethodEntry entry : methodImplementations.values()) {
 			// for each signature, use the header method (public field method of
 			// class MethodEntry)
-			allMethods.add(methodImplementations.get(methodSignature).method);
+			allMethods.add(entry.method);
 		}
 		return allMethods;
 	}
 	
 
+	/**
+	 * computes the methods accessible from each defined type, by signature id: those
+	 * returned by its <code>getMethods()</code>, plus those accessible from its
+	 * supertypes within the project, unless it has a method with the same
+	 * signature.
+	 * 
+	 * The types are processed in topological order (supertypes first), so that a
+	 * type only looks at the methods accessible from its direct supertypes, which
+	 * are already computed, instead of walking all its ancestors again.
+	 * 
+	 * @return the methods accessible from each type, indexed by type id
+	 */
+	private List<Map<Integer, IMethod>> accessibleMethods() {
+		List<Map<Integer, IMethod>> accessibleMethods = new ArrayList<Map<Integer, IMethod>>(
+				Collections.nCopies(typeHierarchy.definedTypeCount(), (Map<Integer, IMethod>) null));
+		for (int typeId : typeHierarchy.topologicalOrder()) {
+			Map<Integer, IMethod> typeMethods = new LinkedHashMap<Integer, IMethod>();
+
+			// first, the methods of the type, local or inherited
+			for (IMethod method : typeHierarchy.get(typeId).getMethods()) {
+				typeMethods.putIfAbsent(method.getSignatureId(), method);
+			}
+
+			// then, the ones of its supertypes within the project that it
+			// does not redefine
+			BitSet directSupertypes = typeHierarchy.directSupertypes(typeId);
+			for (int supertypeId = directSupertypes.nextSetBit(0); supertypeId >= 0; supertypeId = directSupertypes
+					.nextSetBit(supertypeId + 1)) {
+				for (Map.Entry<Integer, IMethod> entry : accessibleMethods.get(supertypeId).entrySet()) {
+					typeMethods.putIfAbsent(entry.getKey(), entry.getValue());
+				}
+			}
+			accessibleMethods.set(typeId, typeMethods);
+		}
+		return accessibleMethods;
+	}
+
 	/**
 	 * this method computes the domain interface of a type (class or interface),
 	 * i.e. the set of methods supported by the type that are specific to the
@@ -133,40 +213,29 @@ public class UsualRelationBuilder implements IRelationBuilder{
 	 * 
 	 * Will see ...
 	 * 
-	 * @param jProject
-	 *            : the containing project/software
-	 * @param allProjectTypes
-	 *            : the types included/defined in the project. Makes certain
-	 *            things easier
 	 * @param type
 	 *            : the type for which we want to compute the domain interface
+	 * @param accessibleMethods
+	 *            : the methods accessible from type, including those of its
+	 *            supertypes within the project (see accessibleMethods())
 	 * @return
 	 * 
 	 */
-	private IMethod[] domainInterface(Collection<IType> allProjectTypes, IType type) {
+	private IMethod[] domainInterface(IType type, Collection<IMethod> accessibleMethods) {
 		IMethod[] domInterface = null;
 
 		// in the end, domain methods will be here
 		Collection<IMethod> domainMethods = new ArrayList<IMethod>();
 
-		// external methods are methods that are defined from classes external
-		// to the project
-		Collection<IMethod> externalMethods = new ArrayList<IMethod>();
-
-		// will enclose non-domain methods, which, for the type being, are
-		// methods defined by classes along the type hierarchy that are not
-		// part of this project (i.e. types not included in allProjectTypes)
-		Collection<IMethod> nonDomainMethods = new ArrayList<IMethod>();
-
 		// all methods. The problem here is that even if a method is defined in
 		// <code>type</code>
 		// it may simply be a redefinition of a utility method (e.g. clone())
 		// first defined by object.
-		// thus, we first collect all methods defined by classes within the
-		// project, and then remove
+		// thus, we first collect all methods accessible from the type, including
+		// those of its supertypes within the project, and then remove
 		// those methods that were first defined in classes OUTSIDE of the
 		// project
-		Collection<IMethod> allMethods = new ArrayList<IMethod>();
+		Collection<IMethod> allMethods = accessibleMethods;
 
 		// add the methods defined in <code>type</code>
 		if (type == null) {
@@ -174,65 +243,25 @@ public class UsualRelationBuilder implements IRelationBuilder{
 			return null;
 		}
 
-		// get the methods defined in the type
-		IMethod[] localMethods = type.getMethods();
-		allMethods.addAll(Arrays.asList(localMethods));
-		
-		// get all the supertypes, both within the project, and outside
-		// all ancestors
-		IType[] allAncestors = type.getAllSupertypes();
-		HashSet<IType> outsideProjectAncestorsSet = (new HashSet<IType>(Arrays.asList(allAncestors))),
-				withinProjectAncestorsSet = (HashSet<IType>) outsideProjectAncestorsSet.clone();
-
-		// those outside project: all ancestors, excluding the types of the
-		// project
-		outsideProjectAncestorsSet.removeAll(allProjectTypes);
-
-		// those within project: all the ancestors, excluding those that are
-		// outside :-)
-		withinProjectAncestorsSet.removeAll(outsideProjectAncestorsSet);
-
-		// collect methods defined within project
-		Iterator<IType> withinProjectAncestors = withinProjectAncestorsSet.iterator();
-		while (withinProjectAncestors.hasNext()) {
-			// get all methods defined in ancestor
-			IMethod[] withinProjectAncestorMethods = withinProjectAncestors.next().getMethods();
-			// of those, add only the ones that have not been redefined,
-			// i.e. those that have no similar
-			// method in localMethods
-			for (int i = 0; i < withinProjectAncestorMethods.length; i++) {
-				boolean found = false;
-				Iterator<IMethod> allMethodsIterator = allMethods.iterator();
-				while (!found && allMethodsIterator.hasNext()) {
-					IMethod nextMethod = allMethodsIterator.next();
-					found = nextMethod.isSimilar(withinProjectAncestorMethods[i]);
-				}
-				if (!found)
-					allMethods.add(withinProjectAncestorMethods[i]);
-
-			}
-		}
-
-		// collect methods defined outside project
-		Iterator<IType> outsideAncestors = outsideProjectAncestorsSet.iterator();
-		while (outsideAncestors.hasNext()) {
-			externalMethods.addAll(Arrays.asList(outsideAncestors.next().getMethods()));
+		// the supertypes outside the project
+		BitSet ancestors = typeHierarchy.ancestors(typeHierarchy.idOf(type));
+		Collection<IType> outsideProjectAncestorsSet = new ArrayList<IType>();
+		for (int ancestorId = ancestors.nextSetBit(0); ancestorId >= 0; ancestorId = ancestors
+				.nextSetBit(ancestorId + 1)) {
+			if (!typeHierarchy.isDefined(ancestorId))
+				outsideProjectAncestorsSet.add(typeHierarchy.get(ancestorId));
 		}
 
 		// now, we remove from allMethods those methods that are
 		// redefinitions of
-		// methods defined outside of the project
+		// methods defined outside of the project. The signatures of the
+		// methods of each outside ancestor are collected once, and shared by
+		// all the types of the project
 		Collection<IMethod> remainingMethods = new ArrayList<IMethod>();
 		Iterator<IMethod> allMethodsIterator = allMethods.iterator();
 		while (allMethodsIterator.hasNext()) {
 			IMethod nextMethod = allMethodsIterator.next();
-			boolean found = false;
-			Iterator<IMethod> externalMethodsIterator = externalMethods.iterator();
-			while (!found && externalMethodsIterator.hasNext()) {
-				IMethod nextExternalMethod = externalMethodsIterator.next();
-				found = nextExternalMethod.isSimilar(nextMethod);
-			}
-			if (!found)
+			if (!externalSignatures.redefinesAny(nextMethod, outsideProjectAncestorsSet))
 				remainingMethods.add(nextMethod);
 
 		}
@@ -79,7 +79,7 @@ public class ComplexPurgeExtentsVisitor extends AbstractVisitor implements IVisi
 			// first remove first element from classesToProcess
 			IType nextClass = (IType) classesToProcess.remove(0);
 
-			IType[] itsAncestors = nextClass.getAllSupertypes();
+			IType[] itsAncestors = relationBuilder.getTypeHierarchy().getAllSupertypes(nextClass);
 
 			// compute the intersection between the extent and the list of
 			// ancestors
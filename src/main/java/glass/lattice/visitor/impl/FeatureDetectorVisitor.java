@@ -15,7 +15,9 @@ import java.util.stream.Collectors;
 import glass.ast.IField;
 import glass.ast.IMethod;
 import glass.ast.IType;
+import glass.lattice.builder.ILatticeBuilder;
 import glass.lattice.model.ILatticeNode;
+import glass.lattice.model.impl.ClosureOperator;
 import glass.lattice.model.impl.ReverseInheritanceRelationBuilder;
 import glass.lattice.visitor.AbstractVisitor;
 import glass.lattice.visitor.IVisitor;
@@ -200,14 +202,37 @@ public class FeatureDetectorVisitor extends AbstractVisitor implements IVisitor{
 
 	private ILatticeNode predecessor;
 
+	/**
+	 * the smallest extent, i.e. number of independent occurrences, that a candidate
+	 * feature may have: 2, or the minimum support of the lattice builder if it is
+	 * larger, since the lattice lacks the concepts below its support
+	 */
+	private int minimumExtentSize = 2;
+
 	public FeatureDetectorVisitor(ReverseInheritanceRelationBuilder builder) {
 		relationBuilder = builder;
 	}
 
+	/**
+	 * a visitor of a lattice built by latticeBuilder, which only considers the
+	 * features that occur at least as many times as the minimum support of
+	 * latticeBuilder
+	 * @param builder
+	 * @param latticeBuilder
+	 */
+	public FeatureDetectorVisitor(ReverseInheritanceRelationBuilder builder, ILatticeBuilder latticeBuilder) {
+		this(builder);
+		this.minimumExtentSize = Math.max(minimumExtentSize, latticeBuilder.getMinimumSupport());
+	}
+
+	public int getMinimumExtentSize() {
+		return minimumExtentSize;
+	}
+
 	@Override
 	public void processNode(ILatticeNode node) {
 		int currentNodeExtentSize = node.getExtent().size();
-		if (currentNodeExtentSize > 1) {
+		if (currentNodeExtentSize >= minimumExtentSize) {
 			// if the node has an extent bigger than 1, it means that we have a
 			// case of two or more independent occurrences of the same feature
 			// (intent).
@@ -446,11 +471,19 @@ public class FeatureDetectorVisitor extends AbstractVisitor implements IVisitor{
 		// 1. first, initialize the set with the local domain interface of componentType
 		commonMethods.addAll(Arrays.asList(relationBuilder.getLocalDomainInterfaces().get(componentType)));
 
-		// 2. Then, iterate over the relatedTypes, and for each related type, compute
-		// the intersection
-		// between commonMethods and the cumulative domain interface of the related type
-		for (IType relatedType : relatedTypes) {
-			commonMethods.retainAll(Arrays.asList(relationBuilder.getSubhierarchyDomainInterfaces().get(relatedType)));
+		// 2. Then, intersect commonMethods with the cumulative domain interfaces of the
+		// related types. Their intersection is the intent of relatedTypes in the relation,
+		// which the closure operator of the builder computes on bit vectors, and caches.
+		// Types with an empty cumulative domain interface are not in the relation: for
+		// them, iterate over the relatedTypes, and compute the intersection one at a time
+		ClosureOperator closureOperator = relationBuilder.getClosureOperator();
+		if (closureOperator != null && !relatedTypes.isEmpty() && closureOperator.containsObjects(relatedTypes)) {
+			commonMethods.retainAll(closureOperator.intentOf(relatedTypes));
+		} else {
+			for (IType relatedType : relatedTypes) {
+				commonMethods
+						.retainAll(Arrays.asList(relationBuilder.getSubhierarchyDomainInterfaces().get(relatedType)));
+			}
 		}
 		// what remains in commonMethods in the desired intersection
 		return commonMethods;
@@ -657,18 +690,12 @@ public class FeatureDetectorVisitor extends AbstractVisitor implements IVisitor{
 			if (nextType.isInterface()) {
 				// then check if the remainder of the of the extent is ALL
 				// implementations
-				// of next class
-				List<IType> listOfItsImplementations = Arrays
-						.asList(nextType.getImplementingClasses());
+				// of next class. The type hierarchy gives the classes that
+				// implement the interface together with their subclasses, which
+				// we need to include in the analysis as well
 				Set<IType> setOfItsImplementations = new HashSet<IType>();
-				setOfItsImplementations.addAll(listOfItsImplementations);
-
-				// now, I need to add the subclasses of the classes that
-				// directly implement the interface, and include
-				// those in the analysis
-				for (IType implementingClass : listOfItsImplementations) {
-					setOfItsImplementations.addAll(Arrays.asList(implementingClass.getAllSubtypes()));
-				}
+				setOfItsImplementations.addAll(
+						Arrays.asList(relationBuilder.getTypeHierarchy().getImplementingClassClosure(nextType)));
 
 				// to see if the extent consists of nextClass + a (sub)set
 				// of its implementations, we check the size
@@ -766,7 +793,7 @@ public class FeatureDetectorVisitor extends AbstractVisitor implements IVisitor{
 			Set<IType> theSetOfItsSubtypesWithinExtent = new HashSet<IType>();
 
 			// initialize it with the set of its subtypes
-			List<IType> itsSubtypes = Arrays.asList(nextType.getAllSubtypes());
+			List<IType> itsSubtypes = Arrays.asList(relationBuilder.getTypeHierarchy().getAllSubtypes(nextType));
 
 			if (nextType.isInterface()) {
 				// if nextType is an interface, itsSubtypes will include its
@@ -143,15 +143,15 @@ public class SpoonInterface implements IType{
 
 	@Override
 	public boolean hasSamePublicInterface(IType comparedType) {
-		Set<String> publicComparedMethods = Stream.of(comparedType.getMethods()).
+		Set<Integer> publicComparedMethods = Stream.of(comparedType.getMethods()).
 				filter(m -> m.isPublic()).
-				map(m -> m.getSignature()).
+				map(m -> m.getSignatureId()).
 				collect(Collectors.toSet());
 		
-		String[] publicLocalMethods = Stream.of(this.getMethods()).
+		int[] publicLocalMethods = Stream.of(this.getMethods()).
 				filter(m -> m.isPublic()).
-				map(m -> m.getSignature()).
-				toArray(String[]::new);
+				mapToInt(m -> m.getSignatureId()).
+				toArray();
 		
 		int nbPublicMethods = publicLocalMethods.length;
 		
@@ -3,29 +3,73 @@ package glass.refactoring.impl;
 import java.util.List;
 
 import glass.ast.IMethod;
-import spoon.reflect.declaration.CtExecutable;
+import glass.ast.SignatureTable;
 import spoon.reflect.declaration.CtMethod;
+import spoon.reflect.declaration.CtParameter;
 
 public class SpoonMethod implements IMethod{
 
 	private CtMethod method;
 	
+	/**
+	 * the signature and its id, the return type, the parameter names and the name
+	 * of the declaring type, computed on first use
+	 */
+	private String signature = null;
+	private int signatureId = -1;
+	private String returnType = null;
+	private String[] parameterNames = null;
+	private String declaringTypeName = null;
+	
 	public SpoonMethod(CtMethod method) {
 		this.method = method;
 	}
 	
+	/**
+	 * computes now what is otherwise computed on first use, which prints the Spoon
+	 * model. A caller that holds the lock of the model can then hand the method to
+	 * other threads, which no longer read the model but its modifiers
+	 * @return this method
+	 */
+	public SpoonMethod precompute() {
+		this.getSignatureId();
+		this.getReturnType();
+		this.getParameterNames();
+		this.getFullSignature();
+		return this;
+	}
+	
 	@Override
 	public String getSignature() {
-		StringBuilder builder = new StringBuilder();
-		// builder.append(this.method.getVisibility() + " "); not needed for now
-		builder.append(this.method.getType() + " ");
-		builder.append(this.method.getSignature());
-		return builder.toString();
+		if (this.signature == null) {
+			StringBuilder builder = new StringBuilder();
+			// builder.append(this.method.getVisibility() + " "); not needed for now
+			builder.append(this.method.getType() + " ");
+			builder.append(this.method.getSignature());
+			this.signature = builder.toString();
+		}
+		return this.signature;
+	}
+
+	@Override
+	public int getSignatureId() {
+		if (this.signatureId < 0) {
+			this.signatureId = SignatureTable.getShared().intern(this.getSignature());
+		}
+		return this.signatureId;
+	}
+
+	@Override
+	public String getFullSignature() {
+		if (this.declaringTypeName == null) {
+			this.declaringTypeName = this.method.getDeclaringType().getQualifiedName();
+		}
+		return this.declaringTypeName + "." + this.getSignature();
 	}
 
 	@Override
 	public boolean isSimilar(IMethod comparedMethod) {
-		return this.getSignature().equals(comparedMethod.getSignature());
+		return this.getSignatureId() == comparedMethod.getSignatureId();
 	}
 
 	@Override
@@ -35,17 +79,23 @@ public class SpoonMethod implements IMethod{
 
 	@Override
 	public String[] getParameterNames() {
-		List<CtExecutable> parameters = this.method.getParameters();
-		String[] res = new String[parameters.size()];
-		for (int i = 0; i<parameters.size(); i++) {
-			res[i] = parameters.get(i).getSimpleName();
+		if (this.parameterNames == null) {
+			List<CtParameter<?>> parameters = this.method.getParameters();
+			String[] res = new String[parameters.size()];
+			for (int i = 0; i<parameters.size(); i++) {
+				res[i] = parameters.get(i).getSimpleName();
+			}
+			this.parameterNames = res;
 		}
-		return res;
+		return this.parameterNames.clone();
 	}
 
 	@Override
 	public String getReturnType() {
-		return this.method.getType().toString();
+		if (this.returnType == null) {
+			this.returnType = this.method.getType().toString();
+		}
+		return this.returnType;
 	}
 
 	@Override
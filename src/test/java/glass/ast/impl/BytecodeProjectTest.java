@@ -0,0 +1,123 @@
+package glass.ast.impl;
+
+import static glass.ast.impl.TypeAssertions.HIERARCHY;
+import static glass.ast.impl.TypeAssertions.SIMPLE_CLASS;
+import static glass.ast.impl.TypeAssertions.fixtures;
+import static glass.ast.impl.TypeAssertions.locatedFields;
+import static glass.ast.impl.TypeAssertions.names;
+import static glass.ast.impl.TypeAssertions.setOf;
+import static glass.ast.impl.TypeAssertions.signatures;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.Set;
+
+import org.junit.Test;
+
+import glass.ast.IType;
+import glass.example.ast.HierarchyTest.IRoot;
+
+/**
+ * A <code>BytecodeProject</code> read from the compiled fixtures must answer the
+ * hierarchy, method and field queries as their sources say.
+ */
+public class BytecodeProjectTest {
+
+	@Test
+	public void readsTheHierarchy() throws IOException {
+		try (BytecodeProject project = new BytecodeProject(Collections.singletonList(classes(HIERARCHY)))) {
+			assertEquals(fixtures("IRoot", "ISubInterface", "IAdhocInterface", "IOtherInterface", "RootClass",
+					"TopClass", "SubClass"), names(project.getDefinedTypes().toArray(new IType[0])));
+
+			IType root = project.findType(HIERARCHY + ".IRoot");
+			assertEquals(fixtures("ISubInterface", "IAdhocInterface", "IOtherInterface", "RootClass", "TopClass",
+					"SubClass"), names(root.getAllSubtypes()));
+			assertEquals(fixtures("RootClass"), names(root.getImplementingClasses()));
+			assertEquals(fixtures("TopClass"),
+					names(project.findType(HIERARCHY + ".ISubInterface").getImplementingClasses()));
+
+			IType subClass = project.findType(HIERARCHY + ".SubClass");
+			Set<String> supertypes = fixtures("TopClass", "ISubInterface", "IOtherInterface", "IRoot");
+			supertypes.add("java.lang.Object");
+			assertEquals(supertypes, names(subClass.getAllSupertypes()));
+			assertEquals(0, subClass.getAllSubtypes().length);
+			assertEquals(0, subClass.getImplementingClasses().length);
+			// the interfaces name java.lang.Object as their superclass, which is left out
+			assertEquals(fixtures("IRoot"),
+					names(project.findType(HIERARCHY + ".ISubInterface").getAllSupertypes()));
+		}
+	}
+
+	@Test
+	public void readsTheMethods() throws IOException {
+		try (BytecodeProject project = new BytecodeProject(Collections.singletonList(classes(HIERARCHY)))) {
+			IType topClass = project.findType(HIERARCHY + ".TopClass");
+			assertEquals(setOf("void inTopClass()", "void thisIsProtected()", "void thisIsPrivate()",
+					"void thisIsRoot()", "void inSubInterface()"), signatures(topClass.getLocalMethods()));
+
+			IType subClass = project.findType(HIERARCHY + ".SubClass");
+			assertEquals(setOf("void subMethod()", "int getCalculation(int)", "void inOtherInterface()",
+					"void thisIsRoot()"), signatures(subClass.getLocalMethods()));
+			Set<String> methods = signatures(subClass.getMethods());
+			assertTrue(methods.toString(), methods.containsAll(setOf("void subMethod()", "int getCalculation(int)",
+					"void inOtherInterface()", "void thisIsRoot()", "void inTopClass()", "void thisIsProtected()",
+					"void inSubInterface()", "java.lang.String toString()", "int hashCode()")));
+			// the private methods of the supertypes are not inherited
+			assertFalse(methods.toString(), methods.contains("void thisIsPrivate()"));
+			assertEquals(methods.size(), subClass.getMethods().length);
+
+			IType rootClass = project.findType(HIERARCHY + ".RootClass");
+			assertFalse(subClass.hasSamePublicInterface(rootClass));
+			assertTrue(rootClass.hasSamePublicInterface(project.findType(HIERARCHY + ".RootClass")));
+		}
+	}
+
+	@Test
+	public void locatesTheFields() throws IOException {
+		Path simpleClassPackage = classes(SIMPLE_CLASS.substring(0, SIMPLE_CLASS.lastIndexOf('.')));
+		try (BytecodeProject project = new BytecodeProject(Collections.singletonList(simpleClassPackage))) {
+			IType simpleClass = project.findType(SIMPLE_CLASS);
+			// name is only set by the constructor, which is not a location
+			assertEquals(setOf("count@getCount", "name", "id@printId"), locatedFields(simpleClass.getFields()));
+			assertEquals(setOf("void printId()", "int getCount()", "void compute(int,java.lang.String)"),
+					signatures(simpleClass.getLocalMethods()));
+		}
+	}
+
+	@Test
+	public void findsTheLibraryAndNestedTypes() throws IOException {
+		try (BytecodeProject project = new BytecodeProject(Collections.singletonList(classes(HIERARCHY)))) {
+			assertEquals("java.util.Map$Entry", project.findType("java.util.Map.Entry").getFullyQualifiedName());
+			assertEquals("java.util.Map$Entry", project.findType("java.util.Map$Entry").getFullyQualifiedName());
+			assertNull(project.findType(HIERARCHY + ".Missing"));
+
+			IType subClass = project.findType(HIERARCHY + ".SubClass");
+			assertArrayEquals(new String[][] { { HIERARCHY, "TopClass" } }, subClass.resolveType("TopClass"));
+			assertArrayEquals(new String[][] { { "java.lang", "String" } }, subClass.resolveType("String"));
+			assertArrayEquals(new String[][] { { "java.util", "Map.Entry" } },
+					subClass.resolveType("java.util.Map.Entry"));
+		}
+	}
+
+	/**
+	 * the directory of the compiled test classes of a package
+	 * @param packageName
+	 * @return
+	 */
+	private static Path classes(String packageName) {
+		try {
+			Path root = Paths.get(IRoot.class.getProtectionDomain().getCodeSource().getLocation().toURI());
+			return root.resolve(packageName.replace('.', '/'));
+		} catch (URISyntaxException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+}
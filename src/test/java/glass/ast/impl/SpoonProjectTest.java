@@ -0,0 +1,169 @@
+package glass.ast.impl;
+
+import static glass.ast.impl.TypeAssertions.HIERARCHY;
+import static glass.ast.impl.TypeAssertions.SIMPLE_CLASS;
+import static glass.ast.impl.TypeAssertions.fixtures;
+import static glass.ast.impl.TypeAssertions.locatedFields;
+import static glass.ast.impl.TypeAssertions.names;
+import static glass.ast.impl.TypeAssertions.setOf;
+import static glass.ast.impl.TypeAssertions.signatures;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Set;
+
+import org.junit.Test;
+
+import glass.ast.IType;
+
+/**
+ * A <code>SpoonProject</code> built from the sources of the fixtures must answer
+ * the hierarchy, method and field queries as the sources say, and again once the
+ * hierarchy is changed.
+ */
+public class SpoonProjectTest {
+
+	private static final String SOURCES = "src/test/java/";
+
+	@Test
+	public void readsTheHierarchy() {
+		SpoonProject project = project(HIERARCHY);
+		assertEquals(fixtures("IRoot", "ISubInterface", "IAdhocInterface", "IOtherInterface", "RootClass",
+				"TopClass", "SubClass"), names(project.getDefinedTypes().toArray(new IType[0])));
+
+		IType root = project.findType(HIERARCHY + ".IRoot");
+		assertEquals(fixtures("ISubInterface", "IAdhocInterface", "IOtherInterface", "RootClass", "TopClass",
+				"SubClass"), names(root.getAllSubtypes()));
+		assertEquals(fixtures("RootClass"), names(root.getImplementingClasses()));
+		assertEquals(fixtures("TopClass"),
+				names(project.findType(HIERARCHY + ".ISubInterface").getImplementingClasses()));
+
+		IType subClass = project.findType(HIERARCHY + ".SubClass");
+		Set<String> supertypes = fixtures("TopClass", "ISubInterface", "IOtherInterface", "IRoot");
+		supertypes.add("java.lang.Object");
+		assertEquals(supertypes, names(subClass.getAllSupertypes()));
+		assertEquals(0, subClass.getAllSubtypes().length);
+		assertEquals(0, subClass.getImplementingClasses().length);
+		assertEquals(fixtures("IRoot"),
+				names(project.findType(HIERARCHY + ".ISubInterface").getAllSupertypes()));
+	}
+
+	@Test
+	public void readsTheMethods() {
+		SpoonProject project = project(HIERARCHY);
+		IType topClass = project.findType(HIERARCHY + ".TopClass");
+		assertEquals(setOf("void inTopClass()", "void thisIsProtected()", "void thisIsPrivate()",
+				"void thisIsRoot()", "void inSubInterface()"), signatures(topClass.getLocalMethods()));
+
+		IType subClass = project.findType(HIERARCHY + ".SubClass");
+		assertEquals(setOf("void subMethod()", "int getCalculation(int)", "void inOtherInterface()",
+				"void thisIsRoot()"), signatures(subClass.getLocalMethods()));
+		Set<String> methods = signatures(subClass.getMethods());
+		assertTrue(methods.toString(), methods.containsAll(setOf("void subMethod()", "int getCalculation(int)",
+				"void inOtherInterface()", "void thisIsRoot()", "void inTopClass()", "void thisIsProtected()",
+				"void inSubInterface()")));
+		// the private methods of the supertypes are not inherited
+		assertFalse(methods.toString(), methods.contains("void thisIsPrivate()"));
+		assertEquals(methods.size(), subClass.getMethods().length);
+
+		IType rootClass = project.findType(HIERARCHY + ".RootClass");
+		assertFalse(subClass.hasSamePublicInterface(rootClass));
+		assertTrue(rootClass.hasSamePublicInterface(rootClass));
+	}
+
+	@Test
+	public void locatesTheFields() {
+		SpoonProject project = project(SIMPLE_CLASS.substring(0, SIMPLE_CLASS.lastIndexOf('.')));
+		IType simpleClass = project.findType(SIMPLE_CLASS);
+		// name is only set by its initializer, which is not a location
+		assertEquals(setOf("count@getCount", "name", "id@printId"), locatedFields(simpleClass.getFields()));
+		assertEquals(setOf("void printId()", "int getCount()", "void compute(int,java.lang.String)"),
+				signatures(simpleClass.getLocalMethods()));
+	}
+
+	@Test
+	public void refreshesTheQueriesAfterAddSuperInterface() {
+		SpoonProject project = project(HIERARCHY);
+		IType rootClass = project.findType(HIERARCHY + ".RootClass");
+		IType otherInterface = project.findType(HIERARCHY + ".IOtherInterface");
+		IType root = project.findType(HIERARCHY + ".IRoot");
+		// fill the caches first
+		assertEquals(fixtures("IRoot"), withoutObject(rootClass.getAllSupertypes()));
+		assertEquals(fixtures("SubClass"), names(otherInterface.getImplementingClasses()));
+		assertFalse(signatures(rootClass.getMethods()).contains("void inOtherInterface()"));
+		int rootSubtypeCount = root.getAllSubtypes().length;
+
+		rootClass.addSuperInterface(otherInterface);
+
+		assertEquals(fixtures("IRoot", "IOtherInterface"), withoutObject(rootClass.getAllSupertypes()));
+		assertEquals(fixtures("SubClass", "RootClass"), names(otherInterface.getImplementingClasses()));
+		assertEquals(fixtures("SubClass", "RootClass"), names(otherInterface.getAllSubtypes()));
+		assertTrue(signatures(rootClass.getMethods()).contains("void inOtherInterface()"));
+		// RootClass was already below IRoot
+		assertEquals(rootSubtypeCount, root.getAllSubtypes().length);
+	}
+
+	@Test
+	public void refreshesTheQueriesAfterChangeSuperclass() {
+		SpoonProject project = project(HIERARCHY);
+		IType rootClass = project.findType(HIERARCHY + ".RootClass");
+		IType topClass = project.findType(HIERARCHY + ".TopClass");
+		assertEquals(fixtures("SubClass"), names(topClass.getAllSubtypes()));
+		assertFalse(signatures(rootClass.getMethods()).contains("void inTopClass()"));
+
+		rootClass.changeSuperclass(topClass);
+
+		assertEquals(fixtures("SubClass", "RootClass"), names(topClass.getAllSubtypes()));
+		assertEquals(fixtures("TopClass", "ISubInterface", "IRoot"), withoutObject(rootClass.getAllSupertypes()));
+		Set<String> methods = signatures(rootClass.getMethods());
+		assertTrue(methods.toString(), methods.containsAll(setOf("void inTopClass()", "void thisIsProtected()")));
+		assertFalse(methods.toString(), methods.contains("void thisIsPrivate()"));
+
+		// and addSubType does the same through the supertype
+		IType subInterface = project.findType(HIERARCHY + ".ISubInterface");
+		IType otherInterface = project.findType(HIERARCHY + ".IOtherInterface");
+		subInterface.addSubType(otherInterface);
+		assertEquals(fixtures("ISubInterface", "IRoot"), names(otherInterface.getAllSupertypes()));
+		assertTrue(names(subInterface.getAllSubtypes()).contains(HIERARCHY + ".SubClass"));
+	}
+
+	@Test
+	public void findsTheLibraryAndNestedTypes() {
+		SpoonProject project = project(HIERARCHY);
+		assertEquals("java.util.Map$Entry", project.findType("java.util.Map.Entry").getFullyQualifiedName());
+		assertEquals("java.util.Map$Entry", project.findType("java.util.Map$Entry").getFullyQualifiedName());
+		assertNull(project.findType(HIERARCHY + ".Missing"));
+
+		IType subClass = project.findType(HIERARCHY + ".SubClass");
+		assertArrayEquals(new String[][] { { HIERARCHY, "TopClass" } }, subClass.resolveType("TopClass"));
+		assertArrayEquals(new String[][] { { "java.lang", "String" } }, subClass.resolveType("String"));
+		assertArrayEquals(new String[][] { { "java.util", "Map.Entry" } },
+				subClass.resolveType("java.util.Map.Entry"));
+		assertArrayEquals(new String[][] { { "java.util", "Map.Entry" } },
+				subClass.resolveType("java.util.Map$Entry"));
+	}
+
+	/**
+	 * builds the model of the sources of a package of fixtures
+	 * @param packageName
+	 * @return
+	 */
+	private static SpoonProject project(String packageName) {
+		return new SpoonProject(SOURCES + packageName.replace('.', '/'), false);
+	}
+
+	/**
+	 * the names of types, except java.lang.Object, which the classes without a
+	 * superclass have as supertype
+	 * @param types
+	 * @return
+	 */
+	private static Set<String> withoutObject(IType[] types) {
+		Set<String> names = names(types);
+		names.remove("java.lang.Object");
+		return names;
+	}
+}
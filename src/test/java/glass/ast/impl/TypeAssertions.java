@@ -0,0 +1,86 @@
+package glass.ast.impl;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import glass.ast.IField;
+import glass.ast.IMethod;
+import glass.ast.IType;
+
+/**
+ * The fixtures of the project tests, and the views of their answers that the tests
+ * compare, as the order of the answers is not specified.
+ */
+final class TypeAssertions {
+
+	/**
+	 * the package of the hierarchy fixtures: IRoot, its subinterfaces ISubInterface
+	 * (then IAdhocInterface) and IOtherInterface, RootClass implementing IRoot, and
+	 * TopClass implementing ISubInterface, extended by SubClass implementing
+	 * IOtherInterface
+	 */
+	static final String HIERARCHY = "glass.example.ast.HierarchyTest";
+
+	static final String SIMPLE_CLASS = "glass.example.ast.SimpleClass.SimpleClass";
+
+	private TypeAssertions() {
+	}
+
+	/**
+	 * the fully qualified names of the hierarchy fixtures
+	 * @param simpleNames
+	 * @return
+	 */
+	static Set<String> fixtures(String... simpleNames) {
+		Set<String> names = new HashSet<String>();
+		for (String simpleName : simpleNames) {
+			names.add(HIERARCHY + "." + simpleName);
+		}
+		return names;
+	}
+
+	/**
+	 * the fully qualified names of types
+	 * @param types
+	 * @return
+	 */
+	static Set<String> names(IType[] types) {
+		Set<String> names = new HashSet<String>();
+		for (IType type : types) {
+			names.add(type.getFullyQualifiedName());
+		}
+		return names;
+	}
+
+	/**
+	 * the signatures of methods
+	 * @param methods
+	 * @return
+	 */
+	static Set<String> signatures(IMethod[] methods) {
+		Set<String> signatures = new HashSet<String>();
+		for (IMethod method : methods) {
+			signatures.add(method.getSignature());
+		}
+		return signatures;
+	}
+
+	/**
+	 * the fields as "name@location", or just "name" if no method accesses them
+	 * @param fields
+	 * @return
+	 */
+	static Set<String> locatedFields(IField[] fields) {
+		Set<String> located = new HashSet<String>();
+		for (IField field : fields) {
+			located.add(field.getLocation() == null ? field.getElementName()
+					: field.getElementName() + "@" + field.getLocation());
+		}
+		return located;
+	}
+
+	static Set<String> setOf(String... elements) {
+		return new HashSet<String>(Arrays.asList(elements));
+	}
+}
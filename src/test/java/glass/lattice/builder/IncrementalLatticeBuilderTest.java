@@ -0,0 +1,150 @@
+package glass.lattice.builder;
+
+import static glass.lattice.builder.LatticeAssertions.assertSameLattice;
+import static glass.lattice.builder.LatticeAssertions.randomImage;
+import static glass.lattice.builder.LatticeAssertions.randomRelation;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameters;
+
+import glass.lattice.builder.LatticeBuilders.Algorithm;
+import glass.lattice.model.ILattice;
+import glass.lattice.model.IRelation;
+
+/**
+ * The incremental operations of every lattice construction algorithm must leave
+ * the lattice that a full rebuild of the changed relation gives.
+ */
+@RunWith(Parameterized.class)
+public class IncrementalLatticeBuilderTest {
+
+	private static final long SEED = 20240603L;
+
+	@Parameters(name = "{0}")
+	public static Collection<Object[]> parameters() {
+		List<Object[]> parameters = new ArrayList<Object[]>();
+		for (Algorithm algorithm : Algorithm.values()) {
+			parameters.add(new Object[] { algorithm });
+		}
+		return parameters;
+	}
+
+	private Algorithm algorithm;
+
+	public IncrementalLatticeBuilderTest(Algorithm algorithm) {
+		this.algorithm = algorithm;
+	}
+
+	@Test
+	public void objectChangesMatchARebuild() {
+		Random random = new Random(SEED);
+		for (int run = 0; run < 40; run++) {
+			int attributeCount = 1 + random.nextInt(8);
+			double density = 0.1 + 0.6 * random.nextDouble();
+			IRelation relation = randomRelation(random, random.nextInt(15), attributeCount, density);
+			ILatticeBuilder builder = LatticeBuilders.newBuilder(algorithm);
+			ILattice lattice = builder.buildLattice(relation);
+
+			int nextObjectId = relation.getDomain().size();
+			for (int step = 0; step < 30; step++) {
+				List<Object> domain = new ArrayList<Object>(relation.getDomain());
+				int operation = domain.isEmpty() ? 0 : random.nextInt(3);
+				String message = "run " + run + ", step " + step;
+				if (operation == 0) {
+					// a new object
+					Object entity = "g" + nextObjectId++;
+					Set<Object> image = randomImage(random, attributeCount + 2, density);
+					setImage(relation, entity, image);
+					builder.update(lattice, entity, image);
+					message += ", add " + entity + " " + image;
+				} else if (operation == 1) {
+					Object entity = domain.get(random.nextInt(domain.size()));
+					relation.removeFromDomain(entity);
+					builder.remove(lattice, entity);
+					message += ", remove " + entity;
+				} else {
+					Object entity = domain.get(random.nextInt(domain.size()));
+					Set<Object> image = randomImage(random, attributeCount + 2, density);
+					setImage(relation, entity, image);
+					builder.update(lattice, entity, image);
+					message += ", update " + entity + " " + image;
+				}
+				assertSameLattice(message, new LatticeBuilder().buildLattice(relation), lattice);
+			}
+		}
+	}
+
+	@Test
+	public void attributeChangesMatchARebuild() {
+		Random random = new Random(SEED);
+		for (int run = 0; run < 40; run++) {
+			int attributeCount = 1 + random.nextInt(8);
+			double density = 0.1 + 0.6 * random.nextDouble();
+			IRelation relation = randomRelation(random, random.nextInt(15), attributeCount, density);
+			ILatticeBuilder builder = LatticeBuilders.newBuilder(algorithm);
+			ILattice lattice = builder.buildLattice(relation);
+
+			int nextObjectId = relation.getDomain().size();
+			for (int step = 0; step < 30; step++) {
+				// an attribute among the current ones, or a new one
+				Object attribute = "m" + random.nextInt(attributeCount + 2);
+				String message = "run " + run + ", step " + step;
+				int operation = random.nextInt(4);
+				if (operation == 0) {
+					// a new object now and then, so that the insertions run on a
+					// lattice whose columns changed
+					Object entity = "g" + nextObjectId++;
+					Set<Object> image = randomImage(random, attributeCount + 2, density);
+					setImage(relation, entity, image);
+					builder.update(lattice, entity, image);
+					message += ", add " + entity + " " + image;
+				} else if (operation == 1) {
+					for (Object entity : relation.getDomain()) {
+						relation.removeRelation(entity, attribute);
+					}
+					builder.removeAttribute(lattice, attribute);
+					message += ", remove " + attribute;
+				} else {
+					Set<Object> objects = new HashSet<Object>();
+					for (Object entity : relation.getDomain()) {
+						if (random.nextDouble() < density)
+							objects.add(entity);
+					}
+					for (Object entity : relation.getDomain()) {
+						relation.removeRelation(entity, attribute);
+					}
+					for (Object entity : objects) {
+						relation.addRelation(entity, attribute);
+					}
+					builder.addAttribute(lattice, attribute, objects);
+					message += ", add " + attribute + " " + objects;
+				}
+				assertSameLattice(message, new LatticeBuilder().buildLattice(relation), lattice);
+			}
+		}
+	}
+
+	/**
+	 * replaces the image of entity in relation, adding entity to the domain if it
+	 * is not there
+	 * @param relation
+	 * @param entity
+	 * @param image
+	 */
+	private static void setImage(IRelation relation, Object entity, Set<Object> image) {
+		relation.removeFromDomain(entity);
+		relation.addToDomain(entity);
+		for (Object attribute : image) {
+			relation.addRelation(entity, attribute);
+		}
+	}
+}
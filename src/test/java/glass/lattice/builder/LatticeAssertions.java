@@ -0,0 +1,124 @@
+package glass.lattice.builder;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import glass.lattice.model.ILattice;
+import glass.lattice.model.ILatticeNode;
+import glass.lattice.model.IRelation;
+import glass.lattice.model.impl.Relation;
+
+/**
+ * Compares lattices by their concepts and cover relation, and generates the random
+ * relations the builder tests run on.
+ */
+final class LatticeAssertions {
+
+	private LatticeAssertions() {
+	}
+
+	/**
+	 * asserts that the two lattices have the same nodes (intents and extents), the
+	 * same parent/child links, and the same top and bottom
+	 * @param message
+	 * @param expected
+	 * @param actual
+	 */
+	static void assertSameLattice(String message, ILattice expected, ILattice actual) {
+		assertEquals(message + ": top", expected.getTop().getIntent(), actual.getTop().getIntent());
+		assertEquals(message + ": bottom", expected.getBottom().getIntent(), actual.getBottom().getIntent());
+		assertEquals(message + ": concepts", concepts(expected), concepts(actual));
+		assertEquals(message + ": covers", covers(expected), covers(actual));
+	}
+
+	/**
+	 * the extent of each node of the lattice, by intent
+	 * @param lattice
+	 * @return
+	 */
+	static Map<Set<Object>, Set<Object>> concepts(ILattice lattice) {
+		Map<Set<Object>, Set<Object>> concepts = new HashMap<Set<Object>, Set<Object>>();
+		for (ILatticeNode node : nodes(lattice)) {
+			concepts.put(new HashSet<Object>(node.getIntent()), new HashSet<Object>(node.getExtent()));
+		}
+		return concepts;
+	}
+
+	/**
+	 * the parent/child links of the lattice, as pairs of intents
+	 * @param lattice
+	 * @return
+	 */
+	static Set<List<Set<Object>>> covers(ILattice lattice) {
+		Set<List<Set<Object>>> covers = new HashSet<List<Set<Object>>>();
+		for (ILatticeNode node : nodes(lattice)) {
+			for (ILatticeNode child : node.getChildren()) {
+				covers.add(Arrays.asList(new HashSet<Object>(node.getIntent()), new HashSet<Object>(child.getIntent())));
+			}
+		}
+		return covers;
+	}
+
+	/**
+	 * the nodes reachable from the top of the lattice
+	 * @param lattice
+	 * @return
+	 */
+	static Set<ILatticeNode> nodes(ILattice lattice) {
+		Set<ILatticeNode> visited = new HashSet<ILatticeNode>();
+		LinkedList<ILatticeNode> toVisit = new LinkedList<ILatticeNode>();
+		toVisit.add(lattice.getTop());
+		while (!toVisit.isEmpty()) {
+			ILatticeNode node = toVisit.removeFirst();
+			if (visited.add(node))
+				toVisit.addAll(node.getChildren());
+		}
+		return visited;
+	}
+
+	/**
+	 * a relation between objects "g0", "g1", ... and attributes "m0", "m1", ...,
+	 * each pair being in the relation with the given density
+	 * @param random
+	 * @param objectCount
+	 * @param attributeCount
+	 * @param density
+	 * @return
+	 */
+	static IRelation randomRelation(Random random, int objectCount, int attributeCount, double density) {
+		IRelation relation = new Relation();
+		for (int objectId = 0; objectId < objectCount; objectId++) {
+			relation.addToDomain("g" + objectId);
+			relation.addRelation("g" + objectId, "m" + random.nextInt(attributeCount));
+			for (int attributeId = 0; attributeId < attributeCount; attributeId++) {
+				if (random.nextDouble() < density)
+					relation.addRelation("g" + objectId, "m" + attributeId);
+			}
+		}
+		return relation;
+	}
+
+	/**
+	 * a random subset of the attributes "m0", "m1", ...
+	 * @param random
+	 * @param attributeCount
+	 * @param density
+	 * @return
+	 */
+	static Set<Object> randomImage(Random random, int attributeCount, double density) {
+		Set<Object> image = new HashSet<Object>();
+		for (int attributeId = 0; attributeId < attributeCount; attributeId++) {
+			if (random.nextDouble() < density)
+				image.add("m" + attributeId);
+		}
+		return image;
+	}
+}
@@ -0,0 +1,78 @@
+package glass.lattice.builder;
+
+import static glass.lattice.builder.LatticeAssertions.assertSameLattice;
+import static glass.lattice.builder.LatticeAssertions.randomRelation;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameters;
+
+import glass.lattice.builder.LatticeBuilders.Algorithm;
+import glass.lattice.model.ILattice;
+import glass.lattice.model.IRelation;
+
+/**
+ * Every lattice construction algorithm must build the lattice that
+ * <code>LatticeBuilder</code> builds, with and without a minimum support.
+ */
+@RunWith(Parameterized.class)
+public class LatticeBuildersTest {
+
+	private static final long SEED = 20240521L;
+
+	@Parameters(name = "{0}, minimum support {1}")
+	public static Collection<Object[]> parameters() {
+		List<Object[]> parameters = new ArrayList<Object[]>();
+		for (Algorithm algorithm : Algorithm.values()) {
+			for (int minimumSupport : new int[] { 0, 2, 5 }) {
+				parameters.add(new Object[] { algorithm, minimumSupport });
+			}
+		}
+		return parameters;
+	}
+
+	private Algorithm algorithm;
+
+	private int minimumSupport;
+
+	public LatticeBuildersTest(Algorithm algorithm, int minimumSupport) {
+		this.algorithm = algorithm;
+		this.minimumSupport = minimumSupport;
+	}
+
+	@Test
+	public void buildsTheSameLatticeAsGodin() {
+		Random random = new Random(SEED);
+		for (int run = 0; run < 60; run++) {
+			int objectCount = 1 + random.nextInt(25);
+			int attributeCount = 1 + random.nextInt(10);
+			double density = 0.1 + 0.6 * random.nextDouble();
+			IRelation relation = randomRelation(random, objectCount, attributeCount, density);
+
+			ILatticeBuilder reference = new LatticeBuilder();
+			reference.setMinimumSupport(minimumSupport);
+			ILatticeBuilder builder = LatticeBuilders.newBuilder(algorithm);
+			builder.setMinimumSupport(minimumSupport);
+
+			ILattice expected = reference.buildLattice(relation);
+			ILattice actual = builder.buildLattice(relation);
+			assertSameLattice("run " + run, expected, actual);
+		}
+	}
+
+	@Test
+	public void buildsTheLatticeOfAnEmptyRelation() {
+		ILatticeBuilder builder = LatticeBuilders.newBuilder(algorithm);
+		builder.setMinimumSupport(minimumSupport);
+		ILatticeBuilder reference = new LatticeBuilder();
+		reference.setMinimumSupport(minimumSupport);
+		IRelation relation = randomRelation(new Random(SEED), 0, 3, 0.5);
+		assertSameLattice("empty relation", reference.buildLattice(relation), builder.buildLattice(relation));
+	}
+}
@@ -0,0 +1,132 @@
+package glass.lattice.model.impl;
+
+import static glass.lattice.model.impl.RelationIOTest.images;
+import static glass.lattice.model.impl.RelationIOTest.randomRelation;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import glass.lattice.model.IRelation;
+
+/**
+ * A relation written by <code>RelationIO.writeMapped(...)</code> and mapped back
+ * must answer every query as the relation it was written from.
+ */
+public class MappedRelationTest {
+
+	private static final long SEED = 20240614L;
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void answersAsTheWrittenRelation() throws IOException {
+		Random random = new Random(SEED);
+		for (int run = 0; run < 20; run++) {
+			// some rows span several words
+			IRelation relation = randomRelation(random, random.nextInt(40), 1 + random.nextInt(200));
+			MappedRelation mapped = map(relation, run);
+			String message = "run " + run;
+
+			assertEquals(message, relation.getDomain(), new HashSet<Object>(mapped.getDomain()));
+			assertEquals(message, relation.getAllImages(), new HashSet<Object>(mapped.getAllImages()));
+			assertEquals(message, images(relation), images(mapped));
+			for (Object attribute : relation.getAllImages()) {
+				assertEquals(message + ", " + attribute, relation.getPreimage(attribute),
+						new HashSet<Object>(mapped.getPreimage(attribute)));
+			}
+			for (Object domainElement : relation.getDomain()) {
+				assertEquals(message, relation.getImage(domainElement).size(), mapped.getImage(domainElement).size());
+				for (Object attribute : relation.getAllImages()) {
+					assertEquals(message + ", " + domainElement + " " + attribute,
+							relation.containsRelation(domainElement, attribute),
+							mapped.containsRelation(domainElement, attribute));
+				}
+			}
+			// the images are printed in the order of their sets, which differs
+			assertEquals(message, relation.printString().split("\n").length,
+					mapped.printString().split("\n").length);
+		}
+	}
+
+	@Test
+	public void hasTheClosuresOfTheWrittenRelation() throws IOException {
+		Random random = new Random(SEED);
+		for (int run = 0; run < 20; run++) {
+			IRelation relation = randomRelation(random, random.nextInt(40), 1 + random.nextInt(100));
+			ClosureOperator expected = new ClosureOperator(relation);
+			ClosureOperator actual = new ClosureOperator(map(relation, run));
+			String message = "run " + run;
+
+			List<Object> attributes = new ArrayList<Object>(relation.getAllImages());
+			for (int query = 0; query < 20; query++) {
+				Set<Object> someAttributes = new HashSet<Object>();
+				for (Object attribute : attributes) {
+					if (random.nextInt(8) == 0)
+						someAttributes.add(attribute);
+				}
+				assertEquals(message + ", " + someAttributes, expected.extentOf(someAttributes),
+						actual.extentOf(someAttributes));
+				assertEquals(message + ", " + someAttributes, expected.closure(someAttributes),
+						actual.closure(someAttributes));
+				assertEquals(message + ", " + someAttributes,
+						expected.intentOf(expected.extentOf(someAttributes)),
+						actual.intentOf(actual.extentOf(someAttributes)));
+			}
+		}
+	}
+
+	@Test
+	public void rowsAreTheImagesOfTheObjects() throws IOException {
+		IRelation relation = randomRelation(new Random(SEED), 30, 150);
+		MappedRelation mapped = map(relation, 0);
+		for (int objectId = 0; objectId < mapped.getDomainSize(); objectId++) {
+			Object domainElement = mapped.getObject(objectId);
+			BitSet row = mapped.row(objectId);
+			Set<Object> image = new HashSet<Object>();
+			for (int attributeId = row.nextSetBit(0); attributeId >= 0; attributeId = row.nextSetBit(attributeId + 1)) {
+				image.add(mapped.getAttribute(attributeId));
+			}
+			assertEquals(String.valueOf(domainElement), relation.getImage(domainElement), image);
+		}
+	}
+
+	@Test
+	public void rejectsChanges() throws IOException {
+		IRelation relation = new Relation();
+		relation.addRelation("g", "m");
+		MappedRelation mapped = map(relation, 0);
+		try {
+			mapped.addRelation("g", "n");
+			fail("a mapped relation was changed");
+		} catch (UnsupportedOperationException e) {
+			// expected
+		}
+		assertEquals(images(relation), images(mapped));
+	}
+
+	/**
+	 * writes relation in the random-access format, and maps it back
+	 * @param relation
+	 * @param run
+	 * @return
+	 * @throws IOException
+	 */
+	private MappedRelation map(IRelation relation, int run) throws IOException {
+		Path file = folder.getRoot().toPath().resolve("relation" + run + ".map");
+		RelationIO.writeMapped(relation, file);
+		return new MappedRelation(file);
+	}
+}
@@ -0,0 +1,167 @@
+package glass.lattice.model.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import glass.lattice.model.IRelation;
+
+/**
+ * Saving a relation and loading it back must give the same relation, in each
+ * format, and malformed input must be rejected.
+ */
+public class RelationIOTest {
+
+	private static final long SEED = 20240611L;
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void binaryRoundTrip() throws IOException {
+		Random random = new Random(SEED);
+		for (int run = 0; run < 20; run++) {
+			IRelation relation = randomRelation(random, random.nextInt(40), 1 + random.nextInt(200));
+			ByteArrayOutputStream output = new ByteArrayOutputStream();
+			RelationIO.writeBinary(relation, output);
+			IRelation loaded = RelationIO.readBinary(new ByteArrayInputStream(output.toByteArray()));
+			assertEquals("run " + run, images(relation), images(loaded));
+		}
+	}
+
+	@Test
+	public void burmeisterRoundTrip() throws IOException {
+		Random random = new Random(SEED);
+		for (int run = 0; run < 20; run++) {
+			IRelation relation = randomRelation(random, random.nextInt(40), 1 + random.nextInt(30));
+			StringWriter writer = new StringWriter();
+			RelationIO.writeBurmeister(relation, writer);
+			IRelation loaded = RelationIO.readBurmeister(new StringReader(writer.toString()));
+			assertEquals("run " + run, images(relation), images(loaded));
+		}
+	}
+
+	@Test
+	public void savesInTheFormatOfTheFileExtension() throws IOException {
+		IRelation relation = randomRelation(new Random(SEED), 30, 20);
+		for (String name : new String[] { "relation.bin", "relation.cxt" }) {
+			Path file = folder.getRoot().toPath().resolve(name);
+			RelationIO.save(relation, file);
+			assertEquals(name, images(relation), images(RelationIO.load(file)));
+		}
+	}
+
+	@Test
+	public void readsANamedBurmeisterContextWithCRLF() throws IOException {
+		String context = "B\r\nshapes\r\n3\r\n2\r\n\r\nsquare\r\ncircle\r\ndot\r\nhas corners\r\nis round\r\n"
+				+ "X.\r\n.X\r\n..\r\n";
+		IRelation relation = RelationIO.readBurmeister(new StringReader(context));
+
+		IRelation expected = new Relation();
+		expected.addRelation("square", "has corners");
+		expected.addRelation("circle", "is round");
+		expected.addToDomain("dot");
+		assertEquals(images(expected), images(relation));
+	}
+
+	@Test
+	public void rejectsABadMagicNumber() {
+		byte[] bytes = new byte[] { 'G', 'L', 'C', 'Y', 1, 0, 0 };
+		try {
+			RelationIO.readBinary(new ByteArrayInputStream(bytes));
+			fail("a binary relation with a bad magic number was read");
+		} catch (IOException e) {
+			// expected
+		}
+	}
+
+	@Test
+	public void rejectsABadBinaryRowLength() throws IOException {
+		IRelation relation = new Relation();
+		relation.addRelation("g", "m");
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		RelationIO.writeBinary(relation, output);
+
+		// the row of "g" is its last two bytes: its length (1), and the gap before
+		// its only image (0). Claim a second image that the single attribute cannot
+		// hold
+		byte[] bytes = output.toByteArray();
+		bytes[bytes.length - 2] = 2;
+		byte[] longerRow = new byte[bytes.length + 1];
+		System.arraycopy(bytes, 0, longerRow, 0, bytes.length);
+		try {
+			RelationIO.readBinary(new ByteArrayInputStream(longerRow));
+			fail("a row with more images than attributes was read");
+		} catch (IOException e) {
+			// expected
+		}
+
+		// a row that is longer than the rest of the input
+		bytes[bytes.length - 2] = 3;
+		try {
+			RelationIO.readBinary(new ByteArrayInputStream(bytes));
+			fail("a truncated row was read");
+		} catch (IOException e) {
+			// expected
+		}
+	}
+
+	@Test
+	public void rejectsABadBurmeisterRowLength() {
+		String context = "B\n\n1\n2\n\ng\nm0\nm1\nX\n";
+		try {
+			RelationIO.readBurmeister(new StringReader(context));
+			fail("a row with fewer columns than attributes was read");
+		} catch (IOException e) {
+			// expected
+		}
+	}
+
+	/**
+	 * a relation between objects "g0", "g1", ... and attributes "m0", "m1", ...,
+	 * where some objects have no attribute
+	 * @param random
+	 * @param objectCount
+	 * @param attributeCount
+	 * @return
+	 */
+	static IRelation randomRelation(Random random, int objectCount, int attributeCount) {
+		IRelation relation = new Relation();
+		double density = random.nextDouble() * 0.5;
+		for (int objectId = 0; objectId < objectCount; objectId++) {
+			relation.addToDomain("g" + objectId);
+			for (int attributeId = 0; attributeId < attributeCount; attributeId++) {
+				if (random.nextDouble() < density)
+					relation.addRelation("g" + objectId, "m" + attributeId);
+			}
+		}
+		return relation;
+	}
+
+	/**
+	 * the image of each domain element of relation
+	 * @param relation
+	 * @return
+	 */
+	static Map<Object, Set<Object>> images(IRelation relation) {
+		Map<Object, Set<Object>> images = new HashMap<Object, Set<Object>>();
+		for (Object domainElement : relation.getDomain()) {
+			images.put(domainElement, relation.getImage(domainElement));
+		}
+		return images;
+	}
+}